@@ -0,0 +1,124 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link OthelloLogic} calls the game and the CPU make on every move, in operations per second.
+ * Run with {@code ./gradlew jmh}; check {@code ./gradlew test perftOthello} first so a faster result is also a correct one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OthelloLogicBenchmark {
+    private static final int GAMES = 64;
+    private static final int POSITIONS = 1024;
+    // Only games that fill the board are recorded, so every replay places exactly this many disks
+    private static final int MOVES_PER_GAME = 60;
+
+    // Square per move, -1 for a pass
+    private int[][] games;
+    private OthelloLogic[] positions;
+    private OthelloLogic logic;
+    private int nextGame;
+
+    @Setup
+    public void setup() {
+        var random = new SplittableRandom(1);
+        games = new int[GAMES][];
+        for (int i = 0; i < GAMES; ) {
+            var game = randomGame(random);
+            if (game != null) {
+                games[i++] = game;
+            }
+        }
+
+        positions = new OthelloLogic[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            var game = games[i % GAMES];
+            var position = new OthelloLogic();
+            var plies = random.nextInt(game.length + 1);
+            for (int ply = 0; ply < plies; ply++) {
+                play(position, game[ply]);
+            }
+            positions[i] = position;
+        }
+
+        logic = new OthelloLogic();
+    }
+
+    // Random playout as a list of moves, null unless it ends with a full board
+    private static int[] randomGame(SplittableRandom random) {
+        var logic = new OthelloLogic();
+        var moves = new int[2 * MOVES_PER_GAME];
+        var length = 0;
+        var placed = 0;
+        while (!logic.isGameOver()) {
+            if (logic.shouldSkipTurn()) {
+                moves[length++] = -1;
+                logic.nextTurn();
+                continue;
+            }
+            var legal = logic.getLegalMoves(logic.getCurrentPlayer());
+            var pick = random.nextInt(Long.bitCount(legal));
+            for (int i = 0; i < pick; i++) {
+                legal &= legal - 1;
+            }
+            var square = Long.numberOfTrailingZeros(legal);
+            moves[length++] = square;
+            play(logic, square);
+            placed++;
+        }
+        if (placed != MOVES_PER_GAME) {
+            return null;
+        }
+        var game = new int[length];
+        System.arraycopy(moves, 0, game, 0, length);
+        return game;
+    }
+
+    private static void play(OthelloLogic logic, int square) {
+        if (square >= 0) {
+            logic.placeDisk(square);
+        }
+        logic.nextTurn();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOVES_PER_GAME)
+    public long placeDisk() {
+        var game = games[nextGame];
+        nextGame = (nextGame + 1) % GAMES;
+        logic.reset();
+        for (var square : game) {
+            play(logic, square);
+        }
+        return logic.getHash();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void shouldSkipTurn(Blackhole blackhole) {
+        for (var position : positions) {
+            blackhole.consume(position.shouldSkipTurn());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public void isGameOver(Blackhole blackhole) {
+        for (var position : positions) {
+            blackhole.consume(position.isGameOver());
+        }
+    }
+}
@@ -14,6 +14,7 @@ import org.jetbrains.annotations.NotNull;
 
 public final class HolofansLobby extends JavaPlugin implements CommandExecutor, Listener {
     private LobbyCommand lobbyCommand;
+    private ZoneTracker zoneTracker;
     private OthelloGame othelloGame;
     private GomokuGame gomokuGame;
 
@@ -24,8 +25,9 @@ public final class HolofansLobby extends JavaPlugin implements CommandExecutor,
 
         getCommand("lobby").setExecutor(this);
         lobbyCommand = new LobbyCommand(this);
-        othelloGame = new OthelloGame(this);
-        gomokuGame = new GomokuGame(this);
+        zoneTracker = new ZoneTracker(this);
+        othelloGame = new OthelloGame(this, zoneTracker);
+        gomokuGame = new GomokuGame(this, zoneTracker);
 
         reloadConfig();
     }
@@ -33,6 +35,12 @@ public final class HolofansLobby extends JavaPlugin implements CommandExecutor,
     @Override
     public void onDisable() {
         // Plugin shutdown logic
+        if (othelloGame != null) {
+            othelloGame.shutdown();
+        }
+        if (gomokuGame != null) {
+            gomokuGame.shutdown();
+        }
     }
 
     @Override
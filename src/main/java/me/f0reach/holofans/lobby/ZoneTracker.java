@@ -0,0 +1,155 @@
+package me.f0reach.holofans.lobby;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps the set of players inside each registered area up to date from player events,
+ * so games can ask who is nearby without scanning entities.
+ */
+public class ZoneTracker implements Listener {
+    private final Plugin plugin;
+    private final List<Zone> zones = new ArrayList<>();
+
+    public ZoneTracker(Plugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    public Zone register(String world, BoundingBox boundingBox) {
+        var zone = new Zone(world, boundingBox);
+        zones.add(zone);
+        refresh(zone);
+        return zone;
+    }
+
+    public void unregister(Zone zone) {
+        zones.remove(zone);
+        zone.players.clear();
+    }
+
+    /**
+     * Moves the zone and rebuilds its players from the world once.
+     */
+    public void setBoundingBox(Zone zone, BoundingBox boundingBox) {
+        zone.boundingBox = boundingBox;
+        refresh(zone);
+    }
+
+    private void refresh(Zone zone) {
+        zone.players.clear();
+        var world = plugin.getServer().getWorld(zone.world);
+        if (world == null) return;
+        zone.worldId = world.getUID();
+        for (var player : world.getPlayers()) {
+            if (zone.boundingBox.contains(player.getLocation().toVector())) {
+                zone.players.add(player);
+            }
+        }
+    }
+
+    private void update(Player player, Location location) {
+        for (var zone : zones) {
+            if (zone.contains(location)) {
+                zone.players.add(player);
+            } else {
+                zone.players.remove(player);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        for (var zone : zones) {
+            zone.players.remove(event.getPlayer());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        var from = event.getFrom();
+        var to = event.getTo();
+        if (from.getBlockX() == to.getBlockX()
+                && from.getBlockY() == to.getBlockY()
+                && from.getBlockZ() == to.getBlockZ()) {
+            return;
+        }
+        update(event.getPlayer(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        update(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        update(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    public static class Zone {
+        private final String world;
+        private final Set<Player> players = new HashSet<>();
+        private final Set<Player> view = Collections.unmodifiableSet(players);
+        private BoundingBox boundingBox;
+        // Resolved on refresh, the world may load after the zone is registered
+        private UUID worldId;
+
+        private Zone(String world, BoundingBox boundingBox) {
+            this.world = world;
+            this.boundingBox = boundingBox;
+        }
+
+        private boolean contains(Location location) {
+            if (worldId == null) {
+                var locationWorld = location.getWorld();
+                if (locationWorld == null || !locationWorld.getName().equals(world)) return false;
+                worldId = locationWorld.getUID();
+            }
+            return worldId.equals(location.getWorld().getUID()) && boundingBox.contains(location.toVector());
+        }
+
+        /**
+         * Live, read-only view of the players currently inside.
+         */
+        public Set<Player> getPlayers() {
+            return view;
+        }
+
+        public boolean contains(Player player) {
+            return players.contains(player);
+        }
+
+        public boolean isEmpty() {
+            return players.isEmpty();
+        }
+    }
+}
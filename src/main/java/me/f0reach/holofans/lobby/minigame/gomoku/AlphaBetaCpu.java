@@ -0,0 +1,588 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 反復深化アルファベータ探索で手を決めるCPU (SimpleCpuの後継)
+ * 盤面を5マスの区間に分け、区間ごとの石の数から局面の評価値と「各マスに打ったときの得点」を差分更新する
+ * 候補手は石の周囲2マス以内の空きマスに限り、置換表の手・キラー手・ヒストリーと得点で並べ替えて上位だけを読む
+ * 探索の前に必勝手順 (VCF/VCT) を探し、相手の必勝手順があれば崩す手だけを読む
+ */
+public class AlphaBetaCpu implements GomokuCpu {
+    // 相手の石がない区間の、石の数ごとの評価値 (五は探索の中で勝ちとして扱う)
+    private static final int[] SEGMENT_VALUES = {0, 1, 12, 200, 3000, 0};
+    // 区間に石を1つ加えたときの得点。四を五にする得点は他の得点の合計より十分大きくする
+    private static final int FIVE_GAIN = 1 << 24;
+    private static final int[] SEGMENT_GAINS = {1, 11, 188, 2800, FIVE_GAIN, 0};
+    private static final int SEGMENT_LENGTH = 5;
+    // 1マスを含む区間の最大数 (4方向 x 5)
+    private static final int SEGMENTS_PER_CELL = GomokuLines.DIRECTIONS * SEGMENT_LENGTH;
+
+    private static final int WIN_SCORE = 1_000_000_000;
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int MAX_PLY = 64;
+    // 1局面で読む候補手の数
+    private static final int ROOT_BRANCHING = 24;
+    private static final int BRANCHING = 12;
+    private static final int NEIGHBOR_RADIUS = 2;
+    private static final int TIME_CHECK_INTERVAL = 1024;
+    // ヒストリーは同じ程度の得点の手を並べ替えるためだけに使う
+    private static final int MAX_HISTORY = 1 << 12;
+
+    // 置換表: key と data (score 32 | move 20 | depth 8 | bound 2)
+    private static final int TT_BITS = 18;
+    private static final int BOUND_EXACT = 0;
+    private static final int BOUND_LOWER = 1;
+    private static final int BOUND_UPPER = 2;
+
+    // 持ち時間のうち、必勝手順の探索に使う割合 (攻めと守りで合わせて1/4まで、残りはアルファベータ探索に使う)
+    private static final int THREAT_SEARCH_DIVISOR = 8;
+    private static final int THREAT_SEARCH_NODES = 50000;
+
+    private final int cpuPlayerId;
+    private final long timeBudgetMillis;
+    private final GomokuThreatSearch threatSearch = new GomokuThreatSearch(THREAT_SEARCH_NODES);
+
+    private final int size;
+    private final int cellCount;
+    // 区間 (方向 * マス数 + 始点) ごとの5マス、無効な区間は-1
+    private final int[] segmentCells;
+    // マスごとに、そのマスを含む区間 (足りない分は-1)
+    private final int[] cellSegments;
+    private final long[][] zobrist;
+
+    // 探索中の盤面
+    private final byte[] stones;
+    private final byte[] segmentBlack;
+    private final byte[] segmentWhite;
+    // 色ごと (0: 黒, 1: 白) の、各マスに打ったときの得点
+    private final int[][] cellScores;
+    // 周囲2マス以内にある石の数
+    private final int[] neighbors;
+    private final int[] segmentValues = new int[2];
+    // 四 (あと1つで五になる区間) の数
+    private final int[] fours = new int[2];
+    private int stoneCount;
+    private long hash;
+    // 石のある範囲 (探索中は広がるだけ)
+    private int minX, minY, maxX, maxY;
+
+    private final long[] ttKeys = new long[1 << TT_BITS];
+    private final long[] ttData = new long[1 << TT_BITS];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history;
+    private final int[][] moveBuffer = new int[MAX_PLY][];
+    private final int[][] scoreBuffer = new int[MAX_PLY][];
+
+    private long deadline;
+    private boolean aborted;
+    private BooleanSupplier cancelled;
+    private long nodes;
+
+    /**
+     * @param size             盤面の大きさ
+     * @param timeBudgetMillis 1手あたりの持ち時間
+     */
+    public AlphaBetaCpu(int size, int cpuPlayerId, long timeBudgetMillis) {
+        this.cpuPlayerId = cpuPlayerId;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.size = size;
+        this.cellCount = size * size;
+
+        segmentCells = new int[GomokuLines.DIRECTIONS * cellCount * SEGMENT_LENGTH];
+        cellSegments = new int[cellCount * SEGMENTS_PER_CELL];
+        Arrays.fill(segmentCells, -1);
+        Arrays.fill(cellSegments, -1);
+        var segmentCounts = new int[cellCount];
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    var endX = x + GomokuLines.DX[dir] * (SEGMENT_LENGTH - 1);
+                    var endY = y + GomokuLines.DY[dir] * (SEGMENT_LENGTH - 1);
+                    if (!isValid(endX, endY)) {
+                        continue;
+                    }
+                    var segment = dir * cellCount + y * size + x;
+                    for (int i = 0; i < SEGMENT_LENGTH; i++) {
+                        var cell = (y + GomokuLines.DY[dir] * i) * size + x + GomokuLines.DX[dir] * i;
+                        segmentCells[segment * SEGMENT_LENGTH + i] = cell;
+                        cellSegments[cell * SEGMENTS_PER_CELL + segmentCounts[cell]++] = segment;
+                    }
+                }
+            }
+        }
+
+        // 固定のシードで、置換表のキーを毎回同じにする
+        var random = new SplittableRandom(0x60_40_C0L);
+        zobrist = new long[2][cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            zobrist[0][cell] = random.nextLong();
+            zobrist[1][cell] = random.nextLong();
+        }
+
+        stones = new byte[cellCount];
+        segmentBlack = new byte[GomokuLines.DIRECTIONS * cellCount];
+        segmentWhite = new byte[GomokuLines.DIRECTIONS * cellCount];
+        cellScores = new int[2][cellCount];
+        neighbors = new int[cellCount];
+        history = new int[2][cellCount];
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            moveBuffer[ply] = new int[cellCount];
+            scoreBuffer[ply] = new int[cellCount];
+        }
+    }
+
+    @Override
+    public int[] findBestMove(GomokuLogic game, BooleanSupplier cancelled) {
+        var lines = game.getLines();
+        if (lines.getStoneCount() == 0) {
+            // 初手は中央に置く
+            return new int[]{size / 2, size / 2};
+        }
+        if (lines.isFull()) {
+            return null;
+        }
+
+        var start = System.nanoTime();
+        var budget = timeBudgetMillis * 1_000_000L;
+        deadline = start + budget;
+        aborted = false;
+        this.cancelled = cancelled;
+        threatSearch.setCancelled(cancelled);
+        nodes = 0;
+        load(lines);
+
+        var me = cpuPlayerId - 1;
+        var other = 1 - me;
+        // 1. 五を作れるなら作る
+        if (fours[me] > 0) {
+            return toMove(findFiveCell(me));
+        }
+
+        // 2. 相手の四を止める必要がなければ、四や三を連続して勝てる手順を探す (持ち時間の1/8まで)
+        if (fours[other] == 0) {
+            var threatDeadline = start + budget / THREAT_SEARCH_DIVISOR;
+            var win = threatSearch.findVcf(lines, cpuPlayerId, threatDeadline);
+            if (win < 0) {
+                win = threatSearch.findVct(lines, cpuPlayerId, threatDeadline);
+            }
+            if (win >= 0) {
+                return toMove(win);
+            }
+        }
+
+        // 3. 相手に必勝手順があれば、それを崩す手だけを読む (2. と合わせて持ち時間の1/4まで)
+        var restricted = threatSearch.findDefense(lines, cpuPlayerId, start + budget * 2 / THREAT_SEARCH_DIVISOR)
+                && threatSearch.getRefutationCount() > 0;
+
+        // 4. アルファベータ探索
+        return toMove(searchRoot(restricted));
+    }
+
+    /**
+     * @param restricted true なら、相手の必勝手順を崩す手 (threatSearch の結果) だけを読む
+     */
+    private int searchRoot(boolean restricted) {
+        var searchStart = System.nanoTime();
+        var moves = moveBuffer[0];
+        int count;
+        if (restricted) {
+            count = threatSearch.getRefutationCount();
+            System.arraycopy(threatSearch.getRefutations(), 0, moves, 0, count);
+        } else {
+            count = generateMoves(cpuPlayerId, 0, -1, ROOT_BRANCHING);
+        }
+        if (count == 0) {
+            // 周囲に空きがなければ、空いているマスならどこでもよい
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (stones[cell] == 0) {
+                    return cell;
+                }
+            }
+        }
+        if (count == 1) {
+            return moves[0];
+        }
+
+        // ヒストリーは手ごとに弱め、古い局面の影響を減らす
+        for (int[] table : history) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                table[cell] >>= 2;
+            }
+        }
+
+        var opponent = 3 - cpuPlayerId;
+        // ルートの手の得点 (generateMoves の ply 0 の得点は使い終わっているので上書きしてよい)
+        var scores = scoreBuffer[0];
+        var bestMove = moves[0];
+        for (int depth = 1; depth < MAX_PLY; depth++) {
+            var alpha = -INFINITY;
+            var iterationBest = -1;
+            for (int i = 0; i < count; i++) {
+                place(moves[i], cpuPlayerId);
+                var score = -search(opponent, depth - 1, -INFINITY, -alpha, 1);
+                remove(moves[i], cpuPlayerId);
+                if (aborted) {
+                    break;
+                }
+                scores[i] = score;
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = moves[i];
+                }
+            }
+            if (aborted) {
+                // 前回の最善手から読んでいるので、途中でもより良い手が見つかっていれば使う
+                if (iterationBest >= 0 && iterationBest != bestMove && scores[0] < alpha) {
+                    bestMove = iterationBest;
+                }
+                break;
+            }
+            bestMove = iterationBest;
+
+            // 次の反復では良かった手から読む
+            sortByScore(moves, scores, count);
+            if (Math.abs(alpha) >= WIN_SCORE - MAX_PLY) {
+                break;
+            }
+            // 次の反復が終わる見込みがなければ打ち切る (必勝手順の探索に使った時間は含めない)
+            if (System.nanoTime() - searchStart > (deadline - searchStart) / 2) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    private int search(int player, int depth, int alpha, int beta, int ply) {
+        if (++nodes % TIME_CHECK_INTERVAL == 0 && (System.nanoTime() > deadline || cancelled.getAsBoolean())) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        var me = player - 1;
+        var other = 1 - me;
+        if (fours[me] > 0) {
+            return WIN_SCORE - ply;
+        }
+        if (stoneCount == cellCount) {
+            return 0;
+        }
+        // 相手の四を止める手は深さを使い切っても読む
+        var forced = fours[other] > 0;
+        if ((depth <= 0 && !forced) || ply >= MAX_PLY - 1) {
+            return evaluate(me);
+        }
+
+        var index = (int) hash & ((1 << TT_BITS) - 1);
+        var ttMove = -1;
+        if (ttKeys[index] == hash) {
+            var data = ttData[index];
+            ttMove = (int) ((data >>> 32) & 0xFFFFF);
+            var ttDepth = (int) ((data >>> 52) & 0xFF);
+            var bound = (int) ((data >>> 60) & 0x3);
+            var score = fromTable((int) data, ply);
+            if (ttDepth >= depth) {
+                if (bound == BOUND_EXACT
+                        || (bound == BOUND_LOWER && score >= beta)
+                        || (bound == BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        var moves = moveBuffer[ply];
+        int count;
+        if (forced) {
+            count = blockingMoves(other, moves);
+            if (count >= 2) {
+                // 四が2つあれば止められない
+                return -(WIN_SCORE - ply - 1);
+            }
+        } else {
+            count = generateMoves(player, ply, ttMove, BRANCHING);
+        }
+        if (count == 0) {
+            return evaluate(me);
+        }
+
+        var alphaOriginal = alpha;
+        var best = -INFINITY;
+        var bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            var cell = moves[i];
+            place(cell, player);
+            var score = -search(3 - player, depth - 1, -beta, -alpha, ply + 1);
+            remove(cell, player);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = cell;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                if (killers[ply][0] != cell) {
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = cell;
+                }
+                history[me][cell] = Math.min(history[me][cell] + depth * depth, MAX_HISTORY);
+                break;
+            }
+        }
+
+        var bound = best <= alphaOriginal ? BOUND_UPPER : best >= beta ? BOUND_LOWER : BOUND_EXACT;
+        ttKeys[index] = hash;
+        ttData[index] = ((long) toTable(best, ply) & 0xFFFFFFFFL)
+                | ((long) bestMove << 32)
+                | ((long) Math.max(depth, 0) << 52)
+                | ((long) bound << 60);
+        return best;
+    }
+
+    // 勝ちまでの手数を置換表に入れるときは、その局面からの手数にする
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -(WIN_SCORE - MAX_PLY)) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_SCORE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -(WIN_SCORE - MAX_PLY)) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // 手番側から見た評価値
+    private int evaluate(int me) {
+        return segmentValues[me] - segmentValues[1 - me];
+    }
+
+    /**
+     * 周囲に石のある空きマスを、得点の高い順に limit 個まで moveBuffer[ply] に入れる
+     * 置換表の手とキラー手は先頭に来るようにする
+     */
+    private int generateMoves(int player, int ply, int ttMove, int limit) {
+        var me = player - 1;
+        var moves = moveBuffer[ply];
+        var scores = scoreBuffer[ply];
+        var count = 0;
+        for (int y = Math.max(0, minY - NEIGHBOR_RADIUS); y <= Math.min(size - 1, maxY + NEIGHBOR_RADIUS); y++) {
+            for (int x = Math.max(0, minX - NEIGHBOR_RADIUS); x <= Math.min(size - 1, maxX + NEIGHBOR_RADIUS); x++) {
+                var cell = y * size + x;
+                if (stones[cell] != 0 || neighbors[cell] == 0) {
+                    continue;
+                }
+                // 自分が打つ得点と、相手に打たせない得点
+                var score = cellScores[me][cell] + cellScores[1 - me][cell] + history[me][cell];
+                if (cell == ttMove) {
+                    score = Integer.MAX_VALUE;
+                } else if (cell == killers[ply][0] || cell == killers[ply][1]) {
+                    score += FIVE_GAIN / 2;
+                }
+                moves[count] = cell;
+                scores[count] = score;
+                count++;
+            }
+        }
+
+        // 上位 limit 個だけを選んで並べる
+        var selected = Math.min(count, limit);
+        for (int i = 0; i < selected; i++) {
+            var best = i;
+            for (int j = i + 1; j < count; j++) {
+                if (scores[j] > scores[best]) {
+                    best = j;
+                }
+            }
+            swap(moves, scores, i, best);
+        }
+        return selected;
+    }
+
+    // 相手の四を止めるマス
+    private int blockingMoves(int other, int[] moves) {
+        var count = 0;
+        for (int y = Math.max(0, minY - SEGMENT_LENGTH); y <= Math.min(size - 1, maxY + SEGMENT_LENGTH); y++) {
+            for (int x = Math.max(0, minX - SEGMENT_LENGTH); x <= Math.min(size - 1, maxX + SEGMENT_LENGTH); x++) {
+                var cell = y * size + x;
+                if (stones[cell] == 0 && cellScores[other][cell] >= FIVE_GAIN) {
+                    moves[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int findFiveCell(int me) {
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (stones[cell] == 0 && cellScores[me][cell] >= FIVE_GAIN) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private static void sortByScore(int[] moves, int[] scores, int count) {
+        for (int i = 1; i < count; i++) {
+            for (int j = i; j > 0 && scores[j] > scores[j - 1]; j--) {
+                swap(moves, scores, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(int[] moves, int[] scores, int i, int j) {
+        var move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+        var score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    // 盤面を読み込み、差分更新する値を作り直す
+    private void load(GomokuLines lines) {
+        Arrays.fill(stones, (byte) 0);
+        Arrays.fill(segmentBlack, (byte) 0);
+        Arrays.fill(segmentWhite, (byte) 0);
+        Arrays.fill(cellScores[0], 0);
+        Arrays.fill(cellScores[1], 0);
+        Arrays.fill(neighbors, 0);
+        segmentValues[0] = 0;
+        segmentValues[1] = 0;
+        fours[0] = 0;
+        fours[1] = 0;
+        stoneCount = 0;
+        hash = 0;
+        minX = size;
+        minY = size;
+        maxX = -1;
+        maxY = -1;
+        for (int[] killer : killers) {
+            Arrays.fill(killer, -1);
+        }
+
+        // 空の区間の得点
+        for (int segment = 0; segment < segmentBlack.length; segment++) {
+            if (segmentCells[segment * SEGMENT_LENGTH] >= 0) {
+                applySegment(segment, 1);
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                var stone = lines.getStone(x, y);
+                if (stone != 0) {
+                    place(y * size + x, stone);
+                }
+            }
+        }
+    }
+
+    private void place(int cell, int player) {
+        var base = cell * SEGMENTS_PER_CELL;
+        for (int i = 0; i < SEGMENTS_PER_CELL; i++) {
+            var segment = cellSegments[base + i];
+            if (segment < 0) {
+                break;
+            }
+            applySegment(segment, -1);
+            if (player == 1) {
+                segmentBlack[segment]++;
+            } else {
+                segmentWhite[segment]++;
+            }
+            applySegment(segment, 1);
+        }
+        stones[cell] = (byte) player;
+        stoneCount++;
+        hash ^= zobrist[player - 1][cell];
+        updateNeighbors(cell, 1);
+
+        var x = cell % size;
+        var y = cell / size;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    private void remove(int cell, int player) {
+        var base = cell * SEGMENTS_PER_CELL;
+        for (int i = 0; i < SEGMENTS_PER_CELL; i++) {
+            var segment = cellSegments[base + i];
+            if (segment < 0) {
+                break;
+            }
+            applySegment(segment, -1);
+            if (player == 1) {
+                segmentBlack[segment]--;
+            } else {
+                segmentWhite[segment]--;
+            }
+            applySegment(segment, 1);
+        }
+        stones[cell] = 0;
+        stoneCount--;
+        hash ^= zobrist[player - 1][cell];
+        updateNeighbors(cell, -1);
+    }
+
+    // 区間の評価値と、区間内の各マスの得点を加える (sign = -1 で取り除く)
+    private void applySegment(int segment, int sign) {
+        var black = segmentBlack[segment];
+        var white = segmentWhite[segment];
+        var first = segment * SEGMENT_LENGTH;
+        if (white == 0) {
+            segmentValues[0] += sign * SEGMENT_VALUES[black];
+            if (black == 4) {
+                fours[0] += sign;
+            }
+            var gain = sign * SEGMENT_GAINS[black];
+            for (int i = 0; i < SEGMENT_LENGTH; i++) {
+                cellScores[0][segmentCells[first + i]] += gain;
+            }
+        }
+        if (black == 0) {
+            segmentValues[1] += sign * SEGMENT_VALUES[white];
+            if (white == 4) {
+                fours[1] += sign;
+            }
+            var gain = sign * SEGMENT_GAINS[white];
+            for (int i = 0; i < SEGMENT_LENGTH; i++) {
+                cellScores[1][segmentCells[first + i]] += gain;
+            }
+        }
+    }
+
+    private void updateNeighbors(int cell, int delta) {
+        var x = cell % size;
+        var y = cell / size;
+        for (int ny = Math.max(0, y - NEIGHBOR_RADIUS); ny <= Math.min(size - 1, y + NEIGHBOR_RADIUS); ny++) {
+            for (int nx = Math.max(0, x - NEIGHBOR_RADIUS); nx <= Math.min(size - 1, x + NEIGHBOR_RADIUS); nx++) {
+                neighbors[ny * size + nx] += delta;
+            }
+        }
+    }
+
+    private int[] toMove(int cell) {
+        return new int[]{cell % size, cell / size};
+    }
+
+    private boolean isValid(int x, int y) {
+        return x >= 0 && x < size && y >= 0 && y < size;
+    }
+}
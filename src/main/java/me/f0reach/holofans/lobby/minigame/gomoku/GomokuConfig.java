@@ -3,6 +3,8 @@ package me.f0reach.holofans.lobby.minigame.gomoku;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.util.Vector;
 
+import java.util.Locale;
+
 public class GomokuConfig {
     private final Plugin plugin;
 
@@ -10,6 +12,10 @@ public class GomokuConfig {
     private String world;
     private Vector posMin, posMax;
     private int boardSize;
+    private GomokuEngine cpuEngine = GomokuEngine.ALPHABETA;
+    // 15x15の盤面でのCPUの持ち時間 (ms)
+    private long cpuTimeBudget = 200;
+    private GomokuStoneDisplay stoneDisplay = GomokuStoneDisplay.ENTITY;
     private boolean isValid;
 
     public GomokuConfig(Plugin plugin) {
@@ -56,11 +62,32 @@ public class GomokuConfig {
 
         boardSize = section.getInt("boardSize");
 
-        if (boardSize < 5) {
+        if (boardSize < GomokuLogic.MIN_BOARD_SIZE || boardSize > GomokuLogic.MAX_BOARD_SIZE) {
             plugin.getLogger().warning("Invalid gomoku board size: " + boardSize + ". Using default size 19.");
             boardSize = 19;
         }
 
+        var engine = section.getString("cpu.engine", "alphabeta");
+        try {
+            cpuEngine = GomokuEngine.valueOf(engine.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid gomoku cpu engine: " + engine + ". Using alphabeta.");
+            cpuEngine = GomokuEngine.ALPHABETA;
+        }
+        cpuTimeBudget = section.getLong("cpu.timeBudget", 200);
+        if (cpuTimeBudget < 10) {
+            plugin.getLogger().warning("Invalid gomoku cpu time budget: " + cpuTimeBudget + ". Using 200.");
+            cpuTimeBudget = 200;
+        }
+
+        var display = section.getString("stoneDisplay", "entity");
+        try {
+            stoneDisplay = GomokuStoneDisplay.valueOf(display.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid gomoku stone display: " + display + ". Using entity.");
+            stoneDisplay = GomokuStoneDisplay.ENTITY;
+        }
+
         this.isValid = true;
 
         plugin.getLogger().info("Gomoku board size: " + boardSize);
@@ -85,4 +112,21 @@ public class GomokuConfig {
     public int getBoardSize() {
         return boardSize;
     }
+
+    public GomokuStoneDisplay getStoneDisplay() {
+        return stoneDisplay;
+    }
+
+    public GomokuEngine getCpuEngine() {
+        return cpuEngine;
+    }
+
+    /**
+     * CPUの1手あたりの持ち時間 (ms)
+     * 設定値は15x15の盤面での時間で、マスの数に比例して増やす (設定値の1/2倍から4倍まで)
+     */
+    public long getCpuTimeBudget() {
+        var scaled = cpuTimeBudget * boardSize * boardSize / (15 * 15);
+        return Math.max(cpuTimeBudget / 2, Math.min(cpuTimeBudget * 4, scaled));
+    }
 }
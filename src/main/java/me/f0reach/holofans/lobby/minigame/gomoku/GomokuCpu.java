@@ -0,0 +1,19 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 五目並べのCPU
+ * 思考はワーカースレッドで行うため、実際の盤面ではなくその時点の複製を受け取る
+ * 同じインスタンスを複数のスレッドから同時に使ってはいけない
+ */
+public interface GomokuCpu {
+    /**
+     * CPUの手を決定する
+     *
+     * @param game      考える盤面 (呼び出し側の複製で、思考中に変更されない)
+     * @param cancelled true になったらできるだけ早く思考を打ち切る (そのときの戻り値は使われないか、それまでの最善手)
+     * @return {x, y} 座標の配列、打てる場所がなければ null
+     */
+    int[] findBestMove(GomokuLogic game, BooleanSupplier cancelled);
+}
@@ -0,0 +1,8 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+public enum GomokuEngine {
+    // 1手先のスコアと必勝手順の探索で手を決める (SimpleCpu)
+    SIMPLE,
+    // 反復深化アルファベータ探索 (AlphaBetaCpu)
+    ALPHABETA
+}
@@ -1,5 +1,6 @@
 package me.f0reach.holofans.lobby.minigame.gomoku;
 
+import me.f0reach.holofans.lobby.ZoneTracker;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import net.kyori.adventure.title.Title;
@@ -21,6 +22,7 @@ import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.MapMeta;
+import org.bukkit.map.MapView;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
@@ -29,14 +31,27 @@ import org.joml.Matrix4f;
 import org.joml.Vector2i;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class GomokuGame implements CommandExecutor, Listener {
     private GomokuLogic logic;
     private final GomokuConfig config;
     private final Plugin plugin;
+    private final ZoneTracker zoneTracker;
     private final GomokuRenderer gridRenderer;
-    private SimpleCpu cpu;
+    private final GomokuStoneDisplays stoneDisplays;
+    private GomokuCpu cpu;
+    // CPUの思考用スレッド (同時に考えるのは1局だけなので1本)
+    private final ExecutorService cpuExecutor;
+    // 盤面が作り直されるたびに増やす番号。CPUの手は依頼したときと同じ番号のときだけ反映する
+    private int generation;
+    // 考え中のCPUの中止フラグ (考えていなければ null)
+    private AtomicBoolean cpuCancelled;
 
     private final Material BOARD_MATERIAL = Material.BROWN_CONCRETE;
     private final Material EMPTY_MATERIAL = Material.AIR;
@@ -51,22 +66,30 @@ public class GomokuGame implements CommandExecutor, Listener {
     private Vector gridBase;
     private double gridSpacing;
     private BoundingBox boardRayTracingBox;
-    private BoundingBox playableArea;
+    // 盤面周辺にいるプレイヤー（ZoneTrackerがイベントから更新する）
+    private ZoneTracker.Zone visitors;
     private final Map<Player, ItemDisplay> placementDisplay;
 
-    public GomokuGame(Plugin plugin) {
+    public GomokuGame(Plugin plugin, ZoneTracker zoneTracker) {
         this.plugin = plugin;
+        this.zoneTracker = zoneTracker;
         this.config = new GomokuConfig(plugin);
         this.players = new ArrayList<>();
         this.placementDisplay = new HashMap<>();
+        this.cpuExecutor = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "Gomoku CPU");
+            thread.setDaemon(true);
+            return thread;
+        });
 
         // Register command executor
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
         Objects.requireNonNull(plugin.getServer().getPluginCommand("gomoku")).setExecutor(this);
 
         this.logic = new GomokuLogic(config.getBoardSize());
-        this.cpu = new SimpleCpu(logic, 2);
+        this.cpu = createCpu();
         this.gridRenderer = new GomokuRenderer();
+        this.stoneDisplays = new GomokuStoneDisplays(plugin);
 
         reloadConfig();
 
@@ -78,6 +101,7 @@ public class GomokuGame implements CommandExecutor, Listener {
         if (!players.isEmpty()) {
             stopGame();
         }
+        cancelCpu();
 
         config.load();
         if (!config.isValid()) {
@@ -85,13 +109,53 @@ public class GomokuGame implements CommandExecutor, Listener {
             return;
         }
         this.world = plugin.getServer().getWorld(config.getWorld());
+        // ワールドが変わる可能性があるため、ゾーンは次の盤面準備で登録し直す
+        if (visitors != null) {
+            zoneTracker.unregister(visitors);
+            visitors = null;
+        }
         this.logic = new GomokuLogic(config.getBoardSize());
-        this.cpu = new SimpleCpu(logic, 2);
+        this.cpu = createCpu();
         this.players.clear();
+        // 盤面の位置や石の表示方法が変わる可能性があるため、次の盤面準備で台帳を作り直す
+        stoneDisplays.invalidate();
 
         plugin.getLogger().info("Gomoku configuration reloaded successfully.");
     }
 
+    private GomokuCpu createCpu() {
+        return switch (config.getCpuEngine()) {
+            case SIMPLE -> new SimpleCpu(2);
+            case ALPHABETA -> new AlphaBetaCpu(config.getBoardSize(), 2, config.getCpuTimeBudget());
+        };
+    }
+
+    /**
+     * CPUの思考を止め、スレッドを終了する (プラグインの無効化時に呼ぶ)
+     */
+    public void shutdown() {
+        cancelCpu();
+        cpuExecutor.shutdownNow();
+        try {
+            if (!cpuExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Gomoku CPU thread did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 考え中のCPUを中止し、まだ届いていない手も捨てる
+     */
+    private void cancelCpu() {
+        generation++;
+        if (cpuCancelled != null) {
+            cpuCancelled.set(true);
+            cpuCancelled = null;
+        }
+    }
+
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String @NotNull [] args) {
         if (!(sender instanceof Player player)) {
@@ -114,13 +178,11 @@ public class GomokuGame implements CommandExecutor, Listener {
         return false;
     }
 
-    private List<Player> getVisitingPlayers() {
-        if (world == null || playableArea == null) {
-            return Collections.emptyList(); // ワールドが設定されていない場合は空のリストを返す
+    private Collection<Player> getVisitingPlayers() {
+        if (visitors == null) {
+            return Collections.emptyList(); // 盤面が準備されていない場合は空のリストを返す
         }
-        return world.getPlayers().stream()
-                .filter(player -> playableArea.contains(player.getLocation().toVector()))
-                .collect(Collectors.toList());
+        return visitors.getPlayers();
     }
 
     private void sendGameStartMessage() {
@@ -161,6 +223,7 @@ public class GomokuGame implements CommandExecutor, Listener {
     }
 
     private void resetGame() {
+        cancelCpu();
         logic.resetGame();
         players.clear();
 
@@ -206,18 +269,19 @@ public class GomokuGame implements CommandExecutor, Listener {
             }
         }
 
-        // 既存のItemDisplayを削除
+        // 石のItemDisplayの台帳を準備 (台帳がなければ周囲を一度だけ調べ、台帳にないItemDisplayは削除する)
         var boundingBox = BoundingBox.of(posMin, posMax).expand(1, 2, 1);
-        world.getNearbyEntities(boundingBox).stream()
-                .filter(entity -> entity instanceof ItemDisplay)
-                .forEach(Entity::remove);
+        stoneDisplays.prepare(world, boundingBox, gridBase, gridSpacing, ITEM_OFFSET, config.getBoardSize(),
+                config.getStoneDisplay() == GomokuStoneDisplay.ENTITY);
 
         // アイテムフレーム用地図の準備
         gridRenderer.setImageSize(128 * gridBlockCount);
         gridRenderer.setGridCount(config.getBoardSize());
-        gridRenderer.createBoardImage();
+        gridRenderer.setStones(config.getStoneDisplay() == GomokuStoneDisplay.MAP ? logic : null);
+        gridRenderer.createBoard();
 
-        // 格子のアイテムフレームを設置
+        // 格子のアイテムフレームを設置 (地図は後で内容ごとに割り当てる)
+        var frames = new ItemFrame[gridBlockCount * gridBlockCount];
         for (int x = 0; x < gridBlockCount; x++) {
             for (int z = 0; z < gridBlockCount; z++) {
                 // アイテムフレームの位置を計算
@@ -232,10 +296,7 @@ public class GomokuGame implements CommandExecutor, Listener {
                         .findFirst()
                         .orElse(null);
 
-                // アイテムフレームが存在し、地図が設定されている場合は再利用
-                if (itemFrame != null
-                        && itemFrame.getItem().getType() == Material.FILLED_MAP
-                        && ((MapMeta) itemFrame.getItem().getItemMeta()).hasMapView()) {
+                if (itemFrame != null) {
                     // 既存のアイテムフレームを再利用
                     itemFrame.setVisibleByDefault(true);
                     itemFrame.setFixed(true);
@@ -246,30 +307,44 @@ public class GomokuGame implements CommandExecutor, Listener {
                         frame.setFixed(true);
                         frame.setItemDropChance(0.0F);
                     });
-                    var mapItem = ItemStack.of(Material.FILLED_MAP, 1);
-                    var mapMeta = (MapMeta) mapItem.getItemMeta();
-                    var emptyMapView = plugin.getServer().createMap(world);
-                    mapMeta.setMapView(emptyMapView);
-                    mapItem.setItemMeta(mapMeta);
-                    // アイテムフレームに地図を設定
-                    itemFrame.setItem(mapItem);
-                }
-
-                // アイテムフレームに設定された地図を確認
-                var mapMeta = (MapMeta) itemFrame.getItem().getItemMeta();
-
-                if (!mapMeta.hasMapView()) {
-                    throw new IllegalStateException("ItemFrame does not have a map view set.");
                 }
+                frames[z * gridBlockCount + x] = itemFrame;
+            }
+        }
 
-                var mapView = Objects.requireNonNull(mapMeta.getMapView());
-                // 地図のレンダラを指定
+        // 内容が同じ地図は1つのMapViewを共有する
+        // クライアントが受け取る地図と、サーバーが管理・保存する地図の数が減る
+        var representatives = gridRenderer.findIdenticalTiles();
+        var mapViews = new HashMap<Integer, MapView>();
+        var usedMapIds = new HashSet<Integer>();
+        // 盤面を作り直すたびに地図が増えないよう、フレームにすでにある地図を優先して使う
+        for (int tile = 0; tile < frames.length; tile++) {
+            var mapView = getMapView(frames[tile]);
+            if (mapView != null && !mapViews.containsKey(representatives[tile]) && usedMapIds.add(mapView.getId())) {
+                mapViews.put(representatives[tile], mapView);
+            }
+        }
+        for (int tile = 0; tile < frames.length; tile++) {
+            var representative = representatives[tile];
+            var mapView = mapViews.get(representative);
+            if (mapView == null) {
+                mapView = plugin.getServer().createMap(world);
+                mapViews.put(representative, mapView);
+            }
+            if (tile == representative) {
+                // 地図のレンダラを指定 (共有する地図には代表の位置を描く)
                 mapView.getRenderers().forEach(mapView::removeRenderer);
-                mapView.addRenderer(gridRenderer.createMapRenderer(x, z));
-                // 地図をアイテムとしての地図に設定
+                mapView.addRenderer(gridRenderer.createMapRenderer(tile % gridBlockCount, tile / gridBlockCount));
+            }
 
-                // アイテムに地図設定を書き戻す
-                itemFrame.getItem().setItemMeta(mapMeta);
+            var current = getMapView(frames[tile]);
+            if (current == null || current.getId() != mapView.getId()) {
+                var mapItem = ItemStack.of(Material.FILLED_MAP, 1);
+                var mapMeta = (MapMeta) mapItem.getItemMeta();
+                mapMeta.setMapView(mapView);
+                mapItem.setItemMeta(mapMeta);
+                // アイテムフレームに地図を設定
+                frames[tile].setItem(mapItem);
             }
         }
 
@@ -278,11 +353,25 @@ public class GomokuGame implements CommandExecutor, Listener {
         boardRayTracingBox = BoundingBox.of(gridBase, gridEnd);
 
         var center = gridBase.clone().add(new Vector(gridBlockCount / 2.0, 0, gridBlockCount / 2.0));
-        playableArea = BoundingBox.of(center, 25, 25, 25);
+        var playableArea = BoundingBox.of(center, 25, 25, 25);
+        if (visitors == null) {
+            visitors = zoneTracker.register(config.getWorld(), playableArea);
+        } else {
+            zoneTracker.setBoundingBox(visitors, playableArea);
+        }
 
         renderStone();
     }
 
+    private MapView getMapView(ItemFrame itemFrame) {
+        var item = itemFrame.getItem();
+        if (item.getType() != Material.FILLED_MAP) {
+            return null;
+        }
+        var mapMeta = (MapMeta) item.getItemMeta();
+        return mapMeta.hasMapView() ? mapMeta.getMapView() : null;
+    }
+
     private Location getStoneLocation(int x, int z) {
         return gridBase.clone()
                 .add(new Vector((x + 1) * gridSpacing, ITEM_OFFSET, (z + 1) * gridSpacing))
@@ -297,34 +386,14 @@ public class GomokuGame implements CommandExecutor, Listener {
     }
 
     private void renderStone() {
-        double itemSize = gridSpacing * 0.5;
-        var mat = new Matrix4f().scale((float) itemSize, 0.1F, (float) itemSize);
-        // 盤面のレンダリングを行う
-        for (int x = 0; x < config.getBoardSize(); x++) {
-            for (int z = 0; z < config.getBoardSize(); z++) {
-                var pos = getStoneLocation(x, z);
-                var itemDisplay = world.getNearbyEntities(pos, itemSize, itemSize, itemSize)
-                        .stream()
-                        .filter(entity -> entity.isValid() && entity instanceof ItemDisplay)
-                        .map(entity -> (ItemDisplay) entity)
-                        .filter(entity -> !placementDisplay.containsValue(entity) && !entity.isGlowing())
-                        .findFirst()
-                        .orElse(null);
-
-                if (itemDisplay == null) {
-                    // アイテムディスプレイが存在しない場合は新規作成
-                    itemDisplay = world.spawn(pos, ItemDisplay.class, display -> {
-                        display.setTransformationMatrix(mat);
-                    });
-                }
-
-                switch (logic.getStone(x, z)) {
-                    case 1 -> itemDisplay.setItemStack(ItemStack.of(BLACK_MATERIAL));
-                    case 2 -> itemDisplay.setItemStack(ItemStack.of(WHITE_MATERIAL));
-                    default -> itemDisplay.setItemStack(ItemStack.of(EMPTY_MATERIAL));
-                }
-            }
+        if (config.getStoneDisplay() == GomokuStoneDisplay.MAP) {
+            // 石が変わった交点を含む地図だけが描き直される
+            gridRenderer.updateStones();
+            return;
         }
+
+        // 石が変わった交点のItemDisplayだけを更新する
+        stoneDisplays.update(logic);
     }
 
     private void renderPlacementDisplay(Player player) {
@@ -384,14 +453,13 @@ public class GomokuGame implements CommandExecutor, Listener {
     }
 
     private void onPeriod() {
-        if (world == null || !config.isValid() || playableArea == null) {
+        if (world == null || !config.isValid() || visitors == null) {
             return;
         }
         // プレイヤーごとに配置表示を更新
         for (Player player : players) {
-            if (!player.isOnline() || !player.getWorld().equals(world)
-                    || !playableArea.contains(player.getLocation().toVector())) {
-                // オフラインまたは異なるワールドの場合は終了
+            if (!visitors.contains(player)) {
+                // オフライン、異なるワールド、エリア外の場合は終了
                 stopGame();
                 return;
             }
@@ -470,16 +538,86 @@ public class GomokuGame implements CommandExecutor, Listener {
             return; // ゲームが開始されていない、または終了している場合は何もしない
         }
 
-        if (logic.getCurrentPlayer() == 2 && players.size() == 1) {
-            // CPUの手番
-            var move = cpu.findBestMove();
+        if (logic.getCurrentPlayer() == 2 && players.size() == 1 && cpuCancelled == null) {
+            // CPUの手番。盤面の複製をワーカースレッドで読み、結果はメインスレッドで反映する
+            var snapshot = new GomokuLogic(logic);
+            var requestCpu = cpu;
+            var requestGeneration = generation;
+            var cancelled = new AtomicBoolean();
+            // 持ち時間の2倍を過ぎたら、CPUの読み終わりを待たずにそれまでの最善手を使う
+            var hardDeadline = System.nanoTime() + config.getCpuTimeBudget() * 2 * 1_000_000L;
+            cpuCancelled = cancelled;
+
+            try {
+                cpuExecutor.execute(() -> {
+                    int[] move = null;
+                    if (!cancelled.get()) {
+                        try {
+                            move = requestCpu.findBestMove(snapshot, () -> cancelled.get() || System.nanoTime() > hardDeadline);
+                        } catch (RuntimeException e) {
+                            plugin.getLogger().warning("Gomoku CPU failed: " + e.getMessage());
+                        }
+                    }
+                    if (!plugin.isEnabled()) return;
+
+                    var result = move;
+                    plugin.getServer().getScheduler().runTask(plugin, () -> applyCpuMove(result, requestGeneration, cancelled));
+                });
+            } catch (RejectedExecutionException e) {
+                plugin.getLogger().warning("Gomoku CPU is not available, dropping a move request");
+                cpuCancelled = null;
+            }
+        }
+    }
+
+    private void applyCpuMove(int[] move, int requestGeneration, AtomicBoolean cancelled) {
+        // 中止された、または依頼後に盤面が作り直された場合は捨てる
+        if (cancelled.get() || requestGeneration != generation) return;
+        cpuCancelled = null;
+
+        if (logic.getCurrentPlayer() != 2 || !logic.isGameStarted()) return;
+
+        // CPUが手を返さなかった (中止と期限が重なった、候補がない等) 場合や置けない手の場合は、置ける場所に打つ
+        // そうしないと誰も次の手を依頼せず、CPUの手番のまま止まってしまう
+        if (move == null || !logic.placeStone(move[0], move[1])) {
             if (move != null) {
-                logic.placeStone(move[0], move[1]);
-                renderStone();
-                checkWinner();
-                showTurn();
+                plugin.getLogger().warning("Gomoku CPU returned an illegal move: " + move[0] + ", " + move[1]);
+            }
+            var fallback = findFallbackMove();
+            if (fallback < 0) return;
+            var size = logic.getBoardSize();
+            logic.placeStone(fallback % size, fallback / size);
+        }
+        renderStone();
+        checkWinner();
+        showTurn();
+    }
+
+    /**
+     * CPUの手の代わりに打つマス (y * size + x) を探す
+     * 石の近くの候補手があればその最初のマス、なければ中央から近い順に最初の空きマス
+     *
+     * @return マスの番号、空きマスがなければ -1
+     */
+    private int findFallbackMove() {
+        var size = logic.getBoardSize();
+        var candidates = logic.getCandidates();
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i] != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(candidates[i]);
+            }
+        }
+        var center = size / 2;
+        for (int radius = 0; radius <= center + 1; radius++) {
+            for (int y = Math.max(0, center - radius); y <= Math.min(size - 1, center + radius); y++) {
+                for (int x = Math.max(0, center - radius); x <= Math.min(size - 1, center + radius); x++) {
+                    if (logic.getStone(x, y) == 0) {
+                        return y * size + x;
+                    }
+                }
             }
         }
+        return -1;
     }
 
     private void handlePlaceStone(Player player) {
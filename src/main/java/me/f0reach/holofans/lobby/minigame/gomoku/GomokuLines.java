@@ -0,0 +1,219 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+import java.util.Arrays;
+
+/**
+ * 盤面を「線」単位のビットマスクで保持するクラス
+ * 横・縦・右下がり斜め・右上がり斜めの全ての線について、色ごとにビット列を持つ
+ * 線上の位置は横・斜めはX座標、縦はY座標をビット番号とする
+ * 64マスを超える線も扱えるよう、1本の線は複数のlongで表す
+ * CPUが盤面を読むときや、探索中に石を置いて戻すときにも使う
+ */
+public class GomokuLines {
+    // 方向 (dx, dy)
+    public static final int HORIZONTAL = 0; // (1, 0)
+    public static final int VERTICAL = 1; // (0, 1)
+    public static final int DIAGONAL = 2; // (1, 1)
+    public static final int ANTI_DIAGONAL = 3; // (1, -1)
+    public static final int DIRECTIONS = 4;
+
+    public static final int[] DX = {1, 0, 1, 1};
+    public static final int[] DY = {0, 1, 1, -1};
+
+    /**
+     * {@link #window} で取り出せる最大の半径
+     */
+    public static final int MAX_RADIUS = 15;
+
+    private final int size;
+    // 1本の線に使うlongの数
+    private final int words;
+    // 方向ごとの最初の線の番号
+    private final int[] lineStart = new int[DIRECTIONS];
+    // 色ごと (0: 黒, 1: 白) の全ての線のビット列
+    private final long[][] bits;
+    private int stoneCount;
+
+    public GomokuLines(int size) {
+        this.size = size;
+        this.words = (size + 63) >>> 6;
+        lineStart[HORIZONTAL] = 0;
+        lineStart[VERTICAL] = size;
+        lineStart[DIAGONAL] = size * 2;
+        lineStart[ANTI_DIAGONAL] = size * 2 + (size * 2 - 1);
+        var lineCount = size * 2 + (size * 2 - 1) * 2;
+        bits = new long[2][lineCount * words];
+    }
+
+    /**
+     * 同じ盤面を持つ複製を作る
+     */
+    public GomokuLines(GomokuLines other) {
+        this.size = other.size;
+        this.words = other.words;
+        System.arraycopy(other.lineStart, 0, lineStart, 0, DIRECTIONS);
+        bits = new long[][]{other.bits[0].clone(), other.bits[1].clone()};
+        stoneCount = other.stoneCount;
+    }
+
+    /**
+     * 同じ大きさの盤面の内容を写す (探索用の盤面を作り直さずに使い回すため)
+     */
+    void copyFrom(GomokuLines other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Board size mismatch: " + other.size + " != " + size);
+        }
+        System.arraycopy(other.bits[0], 0, bits[0], 0, bits[0].length);
+        System.arraycopy(other.bits[1], 0, bits[1], 0, bits[1].length);
+        stoneCount = other.stoneCount;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 置かれている石の数
+     */
+    public int getStoneCount() {
+        return stoneCount;
+    }
+
+    public boolean isFull() {
+        return stoneCount == size * size;
+    }
+
+    /**
+     * マスの石を取得する
+     *
+     * @return 0: 空, 1: 黒, 2: 白
+     */
+    public int getStone(int x, int y) {
+        var index = base(HORIZONTAL, y) + (x >>> 6);
+        var bit = 1L << (x & 63);
+        if ((bits[0][index] & bit) != 0) {
+            return 1;
+        }
+        if ((bits[1][index] & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * 空きマスに石を置く (範囲と空きのチェックは呼び出し側で行う)
+     *
+     * @param player 1: 黒, 2: 白
+     */
+    void set(int x, int y, int player) {
+        var color = bits[player - 1];
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            var pos = position(dir, x, y);
+            color[base(dir, line(dir, x, y)) + (pos >>> 6)] |= 1L << (pos & 63);
+        }
+        stoneCount++;
+    }
+
+    /**
+     * {@link #set} で置いた石を取り除く
+     */
+    void clear(int x, int y, int player) {
+        var color = bits[player - 1];
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            var pos = position(dir, x, y);
+            color[base(dir, line(dir, x, y)) + (pos >>> 6)] &= ~(1L << (pos & 63));
+        }
+        stoneCount--;
+    }
+
+    void reset() {
+        Arrays.fill(bits[0], 0);
+        Arrays.fill(bits[1], 0);
+        stoneCount = 0;
+    }
+
+    /**
+     * (x, y) を通る5連 (以上) が player にあるかを判定する
+     * 各方向で前後4マスを切り出し、シフトとANDで5連を探す
+     */
+    public boolean hasFive(int x, int y, int player) {
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            var m = window(player, dir, x, y, 4);
+            if ((m & (m >>> 1) & (m >>> 2) & (m >>> 3) & (m >>> 4)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * (x, y) を中心に、dir 方向の前後 radius マスにある player の石をビット列で返す
+     * ビット radius + i が (x + DX * i, y + DY * i) に対応する (-radius <= i <= radius)
+     * 盤外のマスは0になる
+     */
+    public int window(int player, int dir, int x, int y, int radius) {
+        var pos = position(dir, x, y);
+        var from = pos - radius;
+        var shift = 0;
+        if (from < 0) {
+            shift = -from;
+            from = 0;
+        }
+        var color = bits[player - 1];
+        var base = base(dir, line(dir, x, y));
+        var word = from >>> 6;
+        var offset = from & 63;
+        var value = color[base + word] >>> offset;
+        if (offset != 0 && word + 1 < words) {
+            value |= color[base + word + 1] << (64 - offset);
+        }
+        var length = radius * 2 + 1 - shift;
+        return (int) ((value & ((1L << length) - 1)) << shift);
+    }
+
+    /**
+     * {@link #window} と同じ並びで、盤内のマスを1にしたビット列を返す
+     */
+    public int boardWindow(int dir, int x, int y, int radius) {
+        var pos = position(dir, x, y);
+        // 線上の位置の範囲
+        int min;
+        int max;
+        switch (dir) {
+            case DIAGONAL -> {
+                min = Math.max(0, x - y);
+                max = Math.min(size - 1, size - 1 + x - y);
+            }
+            case ANTI_DIAGONAL -> {
+                min = Math.max(0, x + y - size + 1);
+                max = Math.min(size - 1, x + y);
+            }
+            default -> {
+                min = 0;
+                max = size - 1;
+            }
+        }
+        var lo = Math.max(min, pos - radius) - (pos - radius);
+        var hi = Math.min(max, pos + radius) - (pos - radius);
+        return (int) (((1L << (hi + 1)) - 1) & ~((1L << lo) - 1));
+    }
+
+    // 線上の位置 (ビット番号)
+    private static int position(int dir, int x, int y) {
+        return dir == VERTICAL ? y : x;
+    }
+
+    // 方向内での線の番号
+    private int line(int dir, int x, int y) {
+        return switch (dir) {
+            case HORIZONTAL -> y;
+            case VERTICAL -> x;
+            case DIAGONAL -> x - y + size - 1;
+            default -> x + y;
+        };
+    }
+
+    private int base(int dir, int line) {
+        return (lineStart[dir] + line) * words;
+    }
+}
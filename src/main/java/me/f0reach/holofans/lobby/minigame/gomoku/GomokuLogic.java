@@ -1,9 +1,30 @@
 package me.f0reach.holofans.lobby.minigame.gomoku;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
 public class GomokuLogic {
-    // 盤面の状態を表す2次元配列
+    /**
+     * 扱える盤面の大きさ (設定と {@link #fromBytes} で確認する)
+     * 上限はCPUの探索用の配列 (深さごとにマスの数だけ確保する) が大きくなりすぎない範囲にする
+     */
+    public static final int MIN_BOARD_SIZE = 5;
+    public static final int MAX_BOARD_SIZE = 64;
+
+    // 盤面の状態を表す線ごとのビットマスク
     // 0: 空, 1: プレイヤー (黒), 2: CPU/プレイヤー (白)
-    private final int[][] board;
+    private final GomokuLines lines;
+
+    // 石の8近傍にある空きマスのビット集合 (CPUの候補手)
+    // ビット番号は y * size + x で、石を置くたびに差分で更新する
+    private final long[] candidates;
+    // マスごとの、8近傍にある石の数 (石を取り除いたときに候補から外すかの判定に使う)
+    private final byte[] neighborCounts;
+
+    // 置いた石のマス (y * size + x) を順に積む。historyLength より後ろは undo した手で、redo 用に残す
+    private final int[] history;
+    private int historyLength;
+    private int historyEnd;
 
     // 現在の手番のプレイヤー
     // 1: プレイヤー (黒), 2: CPU/プレイヤー (白)
@@ -20,12 +41,30 @@ public class GomokuLogic {
      * コンストラクタ
      */
     public GomokuLogic(int size) {
-        board = new int[size][size];
+        lines = new GomokuLines(size);
+        candidates = new long[(size * size + 63) >>> 6];
+        neighborCounts = new byte[size * size];
+        history = new int[size * size];
         currentPlayer = 0; // プレイヤーから開始
         isGameOver = false;
         winner = 0;
     }
 
+    /**
+     * 同じ局面の複製を作る (CPUがワーカースレッドで読むためのスナップショット)
+     */
+    public GomokuLogic(GomokuLogic other) {
+        lines = new GomokuLines(other.lines);
+        candidates = other.candidates.clone();
+        neighborCounts = other.neighborCounts.clone();
+        history = other.history.clone();
+        historyLength = other.historyLength;
+        historyEnd = other.historyEnd;
+        currentPlayer = other.currentPlayer;
+        isGameOver = other.isGameOver;
+        winner = other.winner;
+    }
+
     /**
      * 盤面のある位置の石の状態を取得する
      *
@@ -35,7 +74,7 @@ public class GomokuLogic {
      */
     public int getStone(int x, int y) {
         if (isValid(x, y)) {
-            return board[y][x];
+            return lines.getStone(x, y);
         }
         return -1; // 無効な座標
     }
@@ -46,7 +85,28 @@ public class GomokuLogic {
      * @return 盤面のサイズ (NxN)
      */
     public int getBoardSize() {
-        return board.length;
+        return lines.getSize();
+    }
+
+    /**
+     * 盤面のビットマスクを取得する (CPU用)
+     * 盤面そのものを返すため変更してはいけない。探索で石を置く場合は複製して使う
+     *
+     * @return 盤面の線ごとのビットマスク
+     */
+    public GomokuLines getLines() {
+        return lines;
+    }
+
+    /**
+     * 候補手のビット集合を取得する (CPU用)
+     * いずれかの石の8近傍にある空きマスのビットが立っている。ビット番号は y * size + x
+     * 内部の配列そのものを返すため変更してはいけない
+     *
+     * @return 候補手のビット集合
+     */
+    public long[] getCandidates() {
+        return candidates;
     }
 
     /**
@@ -84,86 +144,142 @@ public class GomokuLogic {
      * @return 石を置けた場合はtrue, それ以外はfalse
      */
     public boolean placeStone(int x, int y) {
-        // ゲームが終了しているか、座標が範囲外か、既に石が置かれている場合は置けない
-        if (isGameOver || !isValid(x, y) || board[y][x] != 0) {
+        // ゲームが始まっていないか、終了しているか、座標が範囲外か、既に石が置かれている場合は置けない
+        if (!isGameStarted() || !isValid(x, y) || lines.getStone(x, y) != 0) {
             return false;
         }
 
-        // 石を置く
-        board[y][x] = currentPlayer;
+        play(x, y);
+        // 新しい手を打ったら、undo した手はやり直せない
+        historyEnd = historyLength;
+        return true;
+    }
 
-        // 勝敗判定
-        if (checkWin(x, y)) {
-            isGameOver = true;
-            winner = currentPlayer;
-        } else if (isBoardFull()) {
-            isGameOver = true;
-            winner = 3; // 引き分け
-        } else {
-            // 手番を交代
-            currentPlayer = (currentPlayer == 1) ? 2 : 1;
+    /**
+     * 最後に置いた石を取り除き、勝敗と手番も置く前に戻す
+     *
+     * @return 戻す手がなければfalse
+     */
+    public boolean undo() {
+        if (historyLength == 0) {
+            return false;
         }
-
+        var size = lines.getSize();
+        var cell = history[--historyLength];
+        var x = cell % size;
+        var y = cell / size;
+        // 石を置いたプレイヤーに手番を戻す (決着した手では手番が交代していない)
+        var player = lines.getStone(x, y);
+        lines.clear(x, y, player);
+        removeCandidates(x, y);
+        currentPlayer = player;
+        isGameOver = false;
+        winner = 0;
         return true;
     }
 
     /**
-     * 石を置いた場所を中心に、勝利条件を満たしたかを判定する
+     * undo した手をもう一度打つ
      *
-     * @param x 石を置いたX座標
-     * @param y 石を置いたY座標
-     * @return 勝利した場合はtrue
-     */
-    private boolean checkWin(int x, int y) {
-        int player = board[y][x];
-
-        // 4方向（縦, 横, 右斜め, 左斜め）をチェック
-        // 方向を示すベクトル (dx, dy)
-        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        for (int[] dir : directions) {
-            int count = 1;
-            // 正の方向
-            for (int i = 1; i < 5; i++) {
-                int nx = x + dir[0] * i;
-                int ny = y + dir[1] * i;
-                if (isValid(nx, ny) && board[ny][nx] == player) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            // 負の方向
-            for (int i = 1; i < 5; i++) {
-                int nx = x - dir[0] * i;
-                int ny = y - dir[1] * i;
-                if (isValid(nx, ny) && board[ny][nx] == player) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            if (count >= 5) {
-                return true;
-            }
+     * @return やり直す手がなければfalse
+     */
+    public boolean redo() {
+        if (historyLength == historyEnd) {
+            return false;
         }
-        return false;
+        var size = lines.getSize();
+        var cell = history[historyLength];
+        play(cell % size, cell / size);
+        return true;
     }
 
     /**
-     * 盤面が全て埋まったか（引き分け）を判定する
+     * 打たれた手の数 (undo した手は含まない)
+     */
+    public int getHistoryLength() {
+        return historyLength;
+    }
+
+    /**
+     * 現在の局面までの棋譜をバイト列にする
+     * 盤面の大きさ、続けて置いた順のマスの番号 (y * size + x) を、それぞれ7ビットずつの可変長整数で書く
+     * 15路盤なら1手1バイトか2バイトになる
+     */
+    public byte[] toBytes() {
+        var out = new ByteArrayOutputStream(historyLength * 2 + 2);
+        writeVarInt(out, lines.getSize());
+        for (int i = 0; i < historyLength; i++) {
+            writeVarInt(out, history[i]);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * {@link #toBytes()} で作ったバイト列から局面を再現する
      *
-     * @return 全て埋まっていればtrue
+     * @throws IllegalArgumentException 壊れたデータや、置けない手が含まれている場合
      */
-    private boolean isBoardFull() {
-        for (int y = 0; y < board.length; y++) {
-            for (int x = 0; x < board.length; x++) {
-                if (board[y][x] == 0) {
-                    return false;
-                }
+    public static GomokuLogic fromBytes(byte[] bytes) {
+        var position = new int[]{0};
+        var size = readVarInt(bytes, position);
+        if (size < MIN_BOARD_SIZE || size > MAX_BOARD_SIZE) {
+            throw new IllegalArgumentException("Invalid gomoku board size: " + size);
+        }
+        var logic = new GomokuLogic(size);
+        logic.startGame();
+        while (position[0] < bytes.length) {
+            var cell = readVarInt(bytes, position);
+            if (cell < 0 || cell >= size * size) {
+                throw new IllegalArgumentException("Gomoku move outside the board at " + logic.historyLength + ": " + cell);
+            }
+            if (!logic.placeStone(cell % size, cell / size)) {
+                throw new IllegalArgumentException("Illegal gomoku move at " + logic.historyLength + ": " + cell);
             }
         }
-        return true;
+        return logic;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        var value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Gomoku game data is truncated");
+            }
+            var b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Gomoku game data is malformed");
+    }
+
+    // 石を置いて履歴に積み、勝敗判定と手番の交代を行う
+    private void play(int x, int y) {
+        // 石を置く
+        lines.set(x, y, currentPlayer);
+        addCandidates(x, y);
+        history[historyLength++] = y * lines.getSize() + x;
+
+        // 勝敗判定 (置いた石を通る5連と、石の数で判定する)
+        if (lines.hasFive(x, y, currentPlayer)) {
+            isGameOver = true;
+            winner = currentPlayer;
+        } else if (lines.isFull()) {
+            isGameOver = true;
+            winner = 3; // 引き分け
+        } else {
+            // 手番を交代
+            currentPlayer = (currentPlayer == 1) ? 2 : 1;
+        }
     }
 
     /**
@@ -174,15 +290,54 @@ public class GomokuLogic {
      * @return 範囲内ならtrue
      */
     private boolean isValid(int x, int y) {
-        return x >= 0 && x < board.length && y >= 0 && y < board.length;
+        return x >= 0 && x < lines.getSize() && y >= 0 && y < lines.getSize();
     }
 
-    public void resetGame() {
-        for (int y = 0; y < board.length; y++) {
-            for (int x = 0; x < board.length; x++) {
-                board[y][x] = 0; // 全てのセルを空にする
+    /**
+     * 置いた石のマスを候補から外し、周囲8マスの空きマスを候補に加える
+     */
+    private void addCandidates(int x, int y) {
+        var size = lines.getSize();
+        var cell = y * size + x;
+        candidates[cell >>> 6] &= ~(1L << cell);
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(size - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(size - 1, x + 1); nx++) {
+                if (nx == x && ny == y) continue;
+                var neighbor = ny * size + nx;
+                neighborCounts[neighbor]++;
+                if (lines.getStone(nx, ny) == 0) {
+                    candidates[neighbor >>> 6] |= 1L << neighbor;
+                }
             }
         }
+    }
+
+    /**
+     * {@link #addCandidates} の逆。周囲に石がなくなった空きマスを候補から外し、空いたマスは周囲に石があれば候補に戻す
+     */
+    private void removeCandidates(int x, int y) {
+        var size = lines.getSize();
+        var cell = y * size + x;
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(size - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(size - 1, x + 1); nx++) {
+                if (nx == x && ny == y) continue;
+                var neighbor = ny * size + nx;
+                if (--neighborCounts[neighbor] == 0) {
+                    candidates[neighbor >>> 6] &= ~(1L << neighbor);
+                }
+            }
+        }
+        if (neighborCounts[cell] > 0) {
+            candidates[cell >>> 6] |= 1L << cell;
+        }
+    }
+
+    public void resetGame() {
+        lines.reset(); // 全てのセルを空にする
+        Arrays.fill(candidates, 0);
+        Arrays.fill(neighborCounts, (byte) 0);
+        historyLength = 0;
+        historyEnd = 0;
         currentPlayer = 0; // プレイヤーから開始
         isGameOver = false;
         winner = 0; // 勝者なし
@@ -6,13 +6,12 @@ import org.bukkit.map.MapRenderer;
 import org.bukkit.map.MapView;
 import org.jetbrains.annotations.NotNull;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
 public class GomokuMapRenderer extends MapRenderer {
     private final GomokuRenderer parent;
     private final int offsetX;
     private final int offsetY;
+    // 最後にキャンバスへ書き込んだ内容の番号 (地図の内容が変わるまでは書き直さない)
+    private int drawnVersion;
 
     public GomokuMapRenderer(GomokuRenderer parent, int offsetX, int offsetY) {
         this.parent = parent;
@@ -21,21 +20,22 @@ public class GomokuMapRenderer extends MapRenderer {
     }
 
     @Override
+    @SuppressWarnings("deprecation") // 計算済みの色番号をそのまま書き込むため
     public void render(@NotNull MapView map, @NotNull MapCanvas canvas, @NotNull Player player) {
-        // 盤面の画像を取得
-        var image = parent.getBoardImage();
-        if (image == null) {
-            return; // 画像がまだ生成されていない場合は何もしない
+        var version = parent.getTileVersion(offsetX, offsetY);
+        if (version == 0 || version == drawnVersion) {
+            return; // 盤面がまだ作られていないか、前回から変わっていない場合は何もしない
         }
 
-        // offsetに合わせて切り取る
-        var partImage = new BufferedImage(128, 128, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = partImage.createGraphics();
-        g.drawImage(image, 0, 0, 128, 128,
-                offsetX * 128, offsetY * 128, offsetX * 128 + 128, offsetY * 128 + 128, null);
-        g.dispose();
-
-        // 盤面の画像を描画
-        canvas.drawImage(0, 0, partImage);
+        // 盤面を描画 (キャンバスは内容を保持するので、変わったときだけ書き込めばよい)
+        // 色番号は GomokuRenderer が地図ごとに計算済みのものを使う。MapCanvas には配列をまとめて書き込むAPIがないため1ピクセルずつ書く
+        var tile = parent.rasterizeTile(offsetX, offsetY);
+        for (int y = 0; y < GomokuRenderer.TILE_SIZE; y++) {
+            var row = y * GomokuRenderer.TILE_SIZE;
+            for (int x = 0; x < GomokuRenderer.TILE_SIZE; x++) {
+                canvas.setPixel(x, y, tile[row + x]);
+            }
+        }
+        drawnVersion = version;
     }
 }
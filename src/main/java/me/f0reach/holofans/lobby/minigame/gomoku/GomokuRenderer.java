@@ -1,17 +1,60 @@
 package me.f0reach.holofans.lobby.minigame.gomoku;
 
+import org.bukkit.map.MapPalette;
+
 import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
+/**
+ * 碁盤の地図を描画するクラス
+ * 盤面全体の画像は持たず、地図1枚 (128x128) ごとに格子の位置から直接、地図の色番号を計算する
+ * 石を地図に描く場合は、石が変わった交点を含む地図だけを描き直す
+ */
 public class GomokuRenderer {
+    public static final int TILE_SIZE = 128;
+
     // --- 設定値 ---
     private int imageSize = 384; // 画像のサイズ (ピクセル)
     private int gridCount = 19;  // 格子の数 (19x19)
     private Color boardColor = new Color(222, 184, 135); // 碁盤の色
     private Color lineColor = new Color(0, 0, 0); // 格子の色
+    private Color blackStoneColor = new Color(25, 25, 25); // 黒石の色
+    private Color whiteStoneColor = new Color(245, 245, 245); // 白石の色
+    // 石を描く盤面 (null なら格子だけを描く)
+    private GomokuLogic stones;
 
     // --- 状態 ---
-    private Image boardImage; // 生成された盤面の画像
+    // 地図の内容が変わるたびに増やす番号 (0: まだ作っていない)
+    private int version;
+    // 地図ごとの、最後に内容が変わったときの番号
+    private int[] tileVersions = new int[0];
+    private int tilesPerSide;
+    private double cellSize;
+    private int startPos;
+    private int endPos;
+    private double stoneRadius;
+    // 地図に描いている石 (y * gridCount + x)
+    private byte[] drawnStones = new byte[0];
+    // 地図の色番号
+    private byte boardPixel;
+    private byte linePixel;
+    private byte blackStonePixel;
+    private byte whiteStonePixel;
+
+    // 地図ごとの色番号と、それを計算したときの内容の番号
+    // 地図の内容が変わったときに一度だけ計算し、その地図を描く全てのレンダラーで使い回す
+    private byte[][] tilePixels = new byte[0][];
+    private int[] rasterizedVersions = new int[0];
+
+    // 作業用 (描画はメインスレッドからのみ行う)
+    private final boolean[] columnLine = new boolean[TILE_SIZE];
+    private final boolean[] columnInGrid = new boolean[TILE_SIZE];
+    // 列ごとの、最も近い交点の番号 (0から、盤外は-1) と交点からの距離
+    private final int[] columnStone = new int[TILE_SIZE];
+    private final int[] columnDelta = new int[TILE_SIZE];
 
     /**
      * GomokuRendererのコンストラクタ
@@ -57,12 +100,26 @@ public class GomokuRenderer {
     }
 
     /**
-     * 盤面の画像を取得します。
+     * 石を地図に描く盤面を設定します。次の {@link #createBoard()} から反映されます。
+     *
+     * @param logic 石を描く盤面、null なら石を描かない
+     */
+    public void setStones(GomokuLogic logic) {
+        this.stones = logic;
+    }
+
+    /**
+     * 地図の内容の番号を取得します。地図の内容が変わると変わります。
      *
-     * @return 盤面の画像
+     * @param tileX X方向の地図の番号
+     * @param tileY Y方向の地図の番号
+     * @return 内容の番号、盤面がまだ作られていなければ 0
      */
-    public Image getBoardImage() {
-        return boardImage;
+    public int getTileVersion(int tileX, int tileY) {
+        if (tileX < 0 || tileX >= tilesPerSide || tileY < 0 || tileY >= tilesPerSide) {
+            return 0;
+        }
+        return tileVersions[tileY * tilesPerSide + tileX];
     }
 
     /**
@@ -77,45 +134,206 @@ public class GomokuRenderer {
     }
 
     /**
-     * 盤面の画像を生成します。
+     * 現在の設定で盤面を作り直します。
+     * 画像は作らず、格子の位置と色番号だけを計算します。
      */
-    public void createBoardImage() {
-        // 画像を生成
-        this.boardImage = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = (Graphics2D) this.boardImage.getGraphics();
+    @SuppressWarnings("deprecation") // 地図の色番号を直接扱うため
+    public void createBoard() {
+        // 盤面の余白と格子1マスのサイズを計算
+        cellSize = (double) imageSize / (gridCount + 1);
+        startPos = (int) cellSize;
+        endPos = (int) (cellSize * gridCount);
 
-        // アンチエイリアス設定
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        stoneRadius = cellSize * 0.4;
 
-        // 碁盤の描画
-        drawBoard(g2d);
+        boardPixel = MapPalette.matchColor(boardColor);
+        linePixel = MapPalette.matchColor(lineColor);
+        blackStonePixel = MapPalette.matchColor(blackStoneColor);
+        whiteStonePixel = MapPalette.matchColor(whiteStoneColor);
 
-        // グラフィックスを解放
-        g2d.dispose();
+        drawnStones = new byte[gridCount * gridCount];
+        if (stones != null) {
+            for (int y = 0; y < gridCount; y++) {
+                for (int x = 0; x < gridCount; x++) {
+                    drawnStones[y * gridCount + x] = (byte) stones.getStone(x, y);
+                }
+            }
+        }
+
+        // 全ての地図を描き直す
+        version++;
+        tilesPerSide = (imageSize + TILE_SIZE - 1) / TILE_SIZE;
+        tileVersions = new int[tilesPerSide * tilesPerSide];
+        Arrays.fill(tileVersions, version);
+        if (tilePixels.length != tileVersions.length) {
+            tilePixels = new byte[tileVersions.length][];
+            rasterizedVersions = new int[tileVersions.length];
+        }
     }
 
     /**
-     * 碁盤（背景、格子、星）を描画します。
+     * 石を描く盤面と地図の内容を比べ、石が変わった交点を含む地図だけを描き直す対象にします。
+     */
+    public void updateStones() {
+        if (stones == null || version == 0) {
+            return;
+        }
+        var changed = false;
+        for (int y = 0; y < gridCount; y++) {
+            for (int x = 0; x < gridCount; x++) {
+                var stone = (byte) stones.getStone(x, y);
+                var cell = y * gridCount + x;
+                if (drawnStones[cell] == stone) continue;
+
+                drawnStones[cell] = stone;
+                if (!changed) {
+                    version++;
+                    changed = true;
+                }
+                // 石の円が掛かる地図 (交点が地図の境目にあれば複数)
+                var centerX = (int) (cellSize * (x + 1));
+                var centerY = (int) (cellSize * (y + 1));
+                var radius = (int) Math.ceil(stoneRadius);
+                for (int tileY = Math.max(0, (centerY - radius) / TILE_SIZE); tileY <= Math.min(tilesPerSide - 1, (centerY + radius) / TILE_SIZE); tileY++) {
+                    for (int tileX = Math.max(0, (centerX - radius) / TILE_SIZE); tileX <= Math.min(tilesPerSide - 1, (centerX + radius) / TILE_SIZE); tileX++) {
+                        tileVersions[tileY * tilesPerSide + tileX] = version;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 地図1枚分の盤面を、地図の色番号 (128x128, 行優先) で描画します。
+     * 地図の内容が変わるまでは計算済みの配列をそのまま返します。戻り値を書き換えてはいけません。
      *
-     * @param g2d Graphics2Dオブジェクト
+     * @param tileX X方向の地図の番号
+     * @param tileY Y方向の地図の番号
+     * @return 色番号の配列、盤面がまだ作られていなければ null
      */
-    private void drawBoard(Graphics2D g2d) {
-        // 盤面の余白と格子1マスのサイズを計算
-        double cellSize = (double) imageSize / (gridCount + 1);
-        int startPos = (int) cellSize;
-        int endPos = (int) (cellSize * gridCount);
+    public byte[] rasterizeTile(int tileX, int tileY) {
+        if (getTileVersion(tileX, tileY) == 0) {
+            return null;
+        }
+        var tile = tileY * tilesPerSide + tileX;
+        var pixels = tilePixels[tile];
+        if (pixels != null && rasterizedVersions[tile] == tileVersions[tile]) {
+            return pixels;
+        }
+        if (pixels == null) {
+            pixels = new byte[TILE_SIZE * TILE_SIZE];
+            tilePixels[tile] = pixels;
+        }
+        rasterizedVersions[tile] = tileVersions[tile];
+
+        var baseX = tileX * TILE_SIZE;
+        var baseY = tileY * TILE_SIZE;
+        for (int x = 0; x < TILE_SIZE; x++) {
+            columnLine[x] = isGridLine(baseX + x);
+            columnInGrid[x] = isInGrid(baseX + x);
+            columnStone[x] = nearestIntersection(baseX + x);
+            columnDelta[x] = baseX + x - (int) (cellSize * (columnStone[x] + 1));
+        }
+        var radiusSquared = stoneRadius * stoneRadius;
+
+        // 格子は幅1ピクセルの線 (startPos から endPos まで)、それ以外は盤面の色
+        for (int y = 0; y < TILE_SIZE; y++) {
+            var row = y * TILE_SIZE;
+            var rowLine = isGridLine(baseY + y);
+            var rowInGrid = isInGrid(baseY + y);
+            var rowStone = nearestIntersection(baseY + y);
+            var rowDelta = baseY + y - (int) (cellSize * (rowStone + 1));
+            for (int x = 0; x < TILE_SIZE; x++) {
+                var line = (rowLine && columnInGrid[x]) || (columnLine[x] && rowInGrid);
+                var pixel = line ? linePixel : boardPixel;
 
-        // 背景を塗りつぶし
-        g2d.setColor(boardColor);
-        g2d.fillRect(0, 0, imageSize, imageSize);
+                // 最も近い交点に石があり、その円の中なら石の色
+                if (rowStone >= 0 && columnStone[x] >= 0) {
+                    var stone = drawnStones[rowStone * gridCount + columnStone[x]];
+                    if (stone != 0 && columnDelta[x] * columnDelta[x] + rowDelta * rowDelta <= radiusSquared) {
+                        pixel = stone == 1 ? blackStonePixel : whiteStonePixel;
+                    }
+                }
+                pixels[row + x] = pixel;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * 内容がまったく同じ地図をまとめます。
+     * 格子の間隔が地図の大きさと揃う盤面では、ほとんどの地図が同じ内容になります。
+     * 石を描く場合、石が置かれうる地図は内容が変わるため、どれともまとめません。
+     *
+     * @return 地図 (tileY * tilesPerSide + tileX) ごとに、同じ内容の地図のうち最初のものの番号
+     */
+    public int[] findIdenticalTiles() {
+        var representatives = new int[tilesPerSide * tilesPerSide];
+        // 内容のハッシュ値ごとの代表の地図 (ハッシュ値が衝突したときのために内容も比べる)
+        var byHash = new HashMap<Integer, List<Integer>>();
+        var contents = new HashMap<Integer, byte[]>();
+        for (int tile = 0; tile < representatives.length; tile++) {
+            if (canHoldStone(tile % tilesPerSide) && canHoldStone(tile / tilesPerSide)) {
+                representatives[tile] = tile;
+                continue;
+            }
+            var pixels = rasterizeTile(tile % tilesPerSide, tile / tilesPerSide);
+            var candidates = byHash.computeIfAbsent(Arrays.hashCode(pixels), hash -> new ArrayList<>());
+            var representative = -1;
+            for (var candidate : candidates) {
+                if (Arrays.equals(contents.get(candidate), pixels)) {
+                    representative = candidate;
+                    break;
+                }
+            }
+            if (representative < 0) {
+                representative = tile;
+                candidates.add(tile);
+                contents.put(tile, pixels);
+            }
+            representatives[tile] = representative;
+        }
+        return representatives;
+    }
 
-        // 格子を描画
-        g2d.setColor(lineColor);
-        g2d.setStroke(new BasicStroke(1));
+    // 地図の番号 tile の範囲に、石の円が掛かる格子線があるか (X, Y方向それぞれで調べる)
+    private boolean canHoldStone(int tile) {
+        if (stones == null) {
+            return false;
+        }
+        var from = tile * TILE_SIZE - stoneRadius;
+        var to = tile * TILE_SIZE + TILE_SIZE - 1 + stoneRadius;
         for (int i = 1; i <= gridCount; i++) {
-            int pos = (int) (cellSize * i);
-            g2d.drawLine(pos, startPos, pos, endPos); // 垂直線
-            g2d.drawLine(startPos, pos, endPos, pos); // 水平線
+            var pos = (int) (cellSize * i);
+            if (pos >= from && pos <= to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // pos に最も近い交点の番号 (0から)、石を描かない場合や盤外は-1
+    private int nearestIntersection(int pos) {
+        if (stones == null) {
+            return -1;
+        }
+        var i = (int) Math.round(pos / cellSize);
+        return i >= 1 && i <= gridCount ? i - 1 : -1;
+    }
+
+    // 盤面の外 (画像サイズを超える部分) は格子を描かない
+    private boolean isInGrid(int pos) {
+        return pos >= startPos && pos <= endPos && pos < imageSize;
+    }
+
+    // pos が (int) (cellSize * i) (1 <= i <= gridCount) のいずれかと一致するか
+    private boolean isGridLine(int pos) {
+        var i = (int) (pos / cellSize);
+        for (int j = Math.max(1, i - 1); j <= Math.min(gridCount, i + 1); j++) {
+            if ((int) (cellSize * j) == pos) {
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,8 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+public enum GomokuStoneDisplay {
+    // 交点ごとのItemDisplayで石を表示する
+    ENTITY,
+    // 盤面の地図に石を描く (交点ごとのエンティティを使わない)
+    MAP
+}
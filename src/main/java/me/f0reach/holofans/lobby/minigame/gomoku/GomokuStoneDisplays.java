@@ -0,0 +1,284 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemDisplay;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * 石を表示するItemDisplayの台帳
+ * 交点の番号 (z * size + x) ごとにエンティティのUUIDを持ち、石が変わった交点のエンティティだけを更新する
+ * 交点の番号はエンティティのPDCにも書いておき、プラグインの再読み込み後は読み込まれているチャンクを一度だけ調べて台帳を作り直す
+ * まだ読み込まれていないチャンクのエンティティは、読み込まれたとき ({@link EntitiesLoadEvent}) に台帳へ加える
+ * エンティティは保存しない (チャンクの保存に含めない) ため、チャンクが読み込まれ直したら置き直す
+ */
+public class GomokuStoneDisplays implements Listener {
+    private static final Material BLACK_MATERIAL = Material.BLACK_WOOL;
+    private static final Material WHITE_MATERIAL = Material.WHITE_WOOL;
+
+    private final Plugin plugin;
+    // ItemDisplayのPDCに書く交点の番号
+    private final NamespacedKey cellKey;
+    private final ItemStack blackItem = ItemStack.of(BLACK_MATERIAL);
+    private final ItemStack whiteItem = ItemStack.of(WHITE_MATERIAL);
+
+    private World world;
+    // 石のItemDisplayを管理する範囲 (範囲内の台帳にないItemDisplayは削除する)
+    private BoundingBox area;
+    private Vector gridBase;
+    private double gridSpacing;
+    private double offset;
+    private int size;
+    // false なら石のItemDisplayを置かない (石を地図に描く場合)
+    private boolean enabled;
+    // 最後に表示した盤面 (チャンクが読み込まれ直したときに置き直すため)
+    private GomokuLogic logic;
+    // 交点ごとのItemDisplay (石がなければ null)
+    private UUID[] displays = new UUID[0];
+    // 交点ごとに最後に表示した石 (-1: 未確認、またはチャンクが読み込まれていないため置けていない)
+    private byte[] shown = new byte[0];
+    // 交点ごとのチャンク (chunkKey) と、盤面が掛かるチャンクの範囲 (チャンクの読み込みのたびに座標を計算しないため)
+    private long[] cellChunks = new long[0];
+    private int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+    private boolean indexed = false;
+
+    public GomokuStoneDisplays(Plugin plugin) {
+        this.plugin = plugin;
+        this.cellKey = new NamespacedKey(plugin, "gomoku_cell");
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * 台帳を捨てる。次の {@link #prepare} で周囲を調べ直す (設定の再読み込み時に呼ぶ)
+     */
+    public void invalidate() {
+        indexed = false;
+        logic = null;
+    }
+
+    /**
+     * 盤面の位置を設定し、台帳がなければ読み込まれているチャンクのItemDisplayから作り直す
+     * 台帳に載らないItemDisplay (古い形式や重複) は削除する
+     *
+     * @param enabled false なら石のItemDisplayを全て削除する (石を地図に描く場合)
+     */
+    public void prepare(World world, BoundingBox area, Vector gridBase, double gridSpacing, double offset, int size, boolean enabled) {
+        this.area = area;
+        this.gridBase = gridBase;
+        this.gridSpacing = gridSpacing;
+        this.offset = offset;
+        this.enabled = enabled;
+        if (indexed && world == this.world && size == this.size) {
+            indexChunks();
+            if (!enabled) {
+                removeAll();
+            }
+            return;
+        }
+
+        this.world = world;
+        this.size = size;
+        displays = new UUID[size * size];
+        shown = new byte[size * size];
+        Arrays.fill(shown, (byte) -1);
+        indexChunks();
+
+        // 読み込まれていないチャンクの分は onEntitiesLoad で台帳に加える
+        for (var entity : world.getNearbyEntities(area, entity -> entity instanceof ItemDisplay)) {
+            adopt(entity);
+        }
+        indexed = true;
+    }
+
+    /**
+     * 盤面と表示を比べ、石が変わった交点のItemDisplayだけを更新する
+     * エンティティが読み込まれていないチャンクの交点は、読み込まれたときに更新する
+     */
+    public void update(GomokuLogic logic) {
+        this.logic = logic;
+        if (!indexed || !enabled || logic.getBoardSize() != size) {
+            return;
+        }
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                var cell = z * size + x;
+                var stone = (byte) logic.getStone(x, z);
+                if (shown[cell] != stone && isLoaded(cell)) {
+                    updateCell(cell, stone);
+                    shown[cell] = stone;
+                }
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        if (!indexed || event.getWorld() != world || !intersects(event.getChunk())) {
+            return;
+        }
+        for (var entity : event.getEntities()) {
+            if (entity instanceof ItemDisplay && area.contains(entity.getLocation().toVector())) {
+                adopt(entity);
+            }
+        }
+        if (markDirty(event.getChunk())) {
+            // イベント中はエンティティを増やさず、次のtickで置き直す
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (logic != null) {
+                    update(logic);
+                }
+            });
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        if (!indexed || event.getWorld() != world || !intersects(event.getChunk())) {
+            return;
+        }
+        // 保存しないエンティティはチャンクと一緒に消えるので、読み込まれ直したら置き直す
+        markDirty(event.getChunk());
+    }
+
+    // 台帳に載せられるItemDisplayなら載せ、載せられなければ (古い形式、重複、無効時) 削除する
+    private void adopt(Entity entity) {
+        var cell = entity.getPersistentDataContainer().get(cellKey, PersistentDataType.INTEGER);
+        if (enabled && cell != null && cell >= 0 && cell < displays.length
+                && (entity.getUniqueId().equals(displays[cell]) || getDisplay(cell) == null)) {
+            // 以前の版で保存されていたエンティティも、これ以降は保存しない
+            entity.setPersistent(false);
+            displays[cell] = entity.getUniqueId();
+            shown[cell] = -1;
+        } else {
+            entity.remove();
+        }
+    }
+
+    // 交点ごとのチャンクと、管理する範囲 (area と全ての交点) が掛かるチャンクの範囲を計算する
+    private void indexChunks() {
+        if (cellChunks.length != size * size) {
+            cellChunks = new long[size * size];
+        }
+        minChunkX = (int) Math.floor(area.getMinX()) >> 4;
+        minChunkZ = (int) Math.floor(area.getMinZ()) >> 4;
+        maxChunkX = (int) Math.floor(area.getMaxX()) >> 4;
+        maxChunkZ = (int) Math.floor(area.getMaxZ()) >> 4;
+        for (int cell = 0; cell < cellChunks.length; cell++) {
+            var location = getLocation(cell);
+            var chunkX = location.getBlockX() >> 4;
+            var chunkZ = location.getBlockZ() >> 4;
+            cellChunks[cell] = chunkKey(chunkX, chunkZ);
+            minChunkX = Math.min(minChunkX, chunkX);
+            minChunkZ = Math.min(minChunkZ, chunkZ);
+            maxChunkX = Math.max(maxChunkX, chunkX);
+            maxChunkZ = Math.max(maxChunkZ, chunkZ);
+        }
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | ((long) chunkZ << 32);
+    }
+
+    // 盤面が掛かるチャンクの範囲に入っているか
+    private boolean intersects(Chunk chunk) {
+        return chunk.getX() >= minChunkX && chunk.getX() <= maxChunkX
+                && chunk.getZ() >= minChunkZ && chunk.getZ() <= maxChunkZ;
+    }
+
+    // チャンク内の交点を未確認にする
+    private boolean markDirty(Chunk chunk) {
+        var key = chunkKey(chunk.getX(), chunk.getZ());
+        var found = false;
+        for (int cell = 0; cell < cellChunks.length; cell++) {
+            if (cellChunks[cell] == key) {
+                shown[cell] = -1;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    // 交点のあるチャンクのエンティティが読み込まれているか
+    private boolean isLoaded(int cell) {
+        var chunkX = (int) cellChunks[cell];
+        var chunkZ = (int) (cellChunks[cell] >> 32);
+        return world.isChunkLoaded(chunkX, chunkZ) && world.getChunkAt(chunkX, chunkZ).isEntitiesLoaded();
+    }
+
+    private void updateCell(int cell, byte stone) {
+        var display = getDisplay(cell);
+        if (stone == 0) {
+            // 石のない交点にはエンティティを置かない
+            if (display != null) {
+                display.remove();
+            }
+            displays[cell] = null;
+            return;
+        }
+
+        var location = getLocation(cell);
+        if (display == null) {
+            display = world.spawn(location, ItemDisplay.class, itemDisplay -> {
+                itemDisplay.setPersistent(false);
+                itemDisplay.setTransformationMatrix(getTransformation());
+                itemDisplay.getPersistentDataContainer().set(cellKey, PersistentDataType.INTEGER, cell);
+            });
+            displays[cell] = display.getUniqueId();
+        } else if (shown[cell] < 0) {
+            // 台帳を作り直した直後は、盤面の位置や大きさが変わっている場合がある
+            display.teleport(location);
+            display.setTransformationMatrix(getTransformation());
+        }
+        display.setItemStack(stone == 1 ? blackItem : whiteItem);
+    }
+
+    private ItemDisplay getDisplay(int cell) {
+        var uuid = displays[cell];
+        if (uuid == null) {
+            return null;
+        }
+        var entity = plugin.getServer().getEntity(uuid);
+        return entity instanceof ItemDisplay display && display.isValid() ? display : null;
+    }
+
+    private void removeAll() {
+        for (int cell = 0; cell < displays.length; cell++) {
+            var display = getDisplay(cell);
+            if (display != null) {
+                display.remove();
+            }
+            displays[cell] = null;
+        }
+        Arrays.fill(shown, (byte) 0);
+    }
+
+    private Location getLocation(int cell) {
+        var x = cell % size;
+        var z = cell / size;
+        return gridBase.clone()
+                .add(new Vector((x + 1) * gridSpacing, offset, (z + 1) * gridSpacing))
+                .toLocation(world);
+    }
+
+    private Matrix4f getTransformation() {
+        double itemSize = gridSpacing * 0.5;
+        return new Matrix4f().scale((float) itemSize, 0.1F, (float) itemSize);
+    }
+}
@@ -0,0 +1,603 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 脅威手だけを展開して必勝手順を探す探索 (CPU用)
+ * VCF: 四を連続して打ち続けて勝つ手順
+ * VCT: 四と三を連続して打ち続けて勝つ手順
+ * 攻め側は四か三を作る手だけ、受け側はそれを止める手だけを読むため、全幅探索よりずっと少ない局面数で長い手順を読める
+ * 禁じ手のない五目並べ (五以上で勝ち) を前提とする
+ * 探索は局面数と時間で打ち切る。打ち切った場合は「見つからなかった」扱いになる
+ * 探索用の盤面と、手の一覧や受けの点の配列は深さごとに確保して使い回すため、盤面の大きさが変わらない限り探索中にオブジェクトを作らない
+ * インスタンスは使い回せるがスレッドセーフではない
+ */
+public class GomokuThreatSearch {
+    // 攻め側の手数の上限
+    public static final int MAX_VCF_DEPTH = 15;
+    public static final int MAX_VCT_DEPTH = 7;
+    // VCTで三を打ったとき、受け側の四による反撃を読む深さ
+    private static final int COUNTER_VCF_DEPTH = 5;
+    private static final int TIME_CHECK_INTERVAL = 64;
+    // windowの中心 (半径4, 半径8)
+    private static final int C4 = 4;
+    private static final int C8 = 8;
+    // attack の再帰の深さの上限 (VCF、またはVCTの途中から読む相手のVCF)
+    private static final int MAX_PLY = Math.max(MAX_VCF_DEPTH, MAX_VCT_DEPTH + COUNTER_VCF_DEPTH) + 1;
+
+    private final int maxNodes;
+
+    // 探索中の盤面 (find のたびに盤面を写す) と、findDefense で受けの手を試す盤面
+    private GomokuLines lines;
+    private GomokuLines trial;
+    private int size;
+    // 深さごとの石のある範囲 {minX, minY, maxX, maxY}
+    private final int[][] boxBuffer = new int[MAX_PLY + 1][4];
+    // 深さごとの、三を打った後の範囲
+    private final int[][] threeBoxBuffer = new int[MAX_PLY + 1][4];
+    // 深さごとの、三に対する受けの点 (止める点と四になる点)
+    private final int[][] defenseBuffer = new int[MAX_PLY + 1][];
+    private int nodes;
+    private long deadline;
+    private boolean aborted;
+    // 探索の中止を外から伝える (CPUの思考が取り消されたときなど)
+    private BooleanSupplier cancelled = () -> false;
+    // ルートで勝ちが見つかったときの初手と応手
+    private int rootMove;
+    private int[] rootReplies = new int[0];
+    private int rootReplyCount;
+    private int rootDepth;
+    // findDefense の結果 (相手の初手と応手の点、そのうち相手の必勝手順が消える点)
+    private int[] defenseCandidates = new int[0];
+    private int defenseCandidateCount;
+    private int[] refutations = new int[0];
+    private int refutationCount;
+
+    /**
+     * @param maxNodes 1回の探索で読む局面数の上限
+     */
+    public GomokuThreatSearch(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * 探索を途中で打ち切る条件を設定する
+     * 打ち切り時刻と同じ間隔で確認し、true になれば見つかっていないものとして探索を終える
+     */
+    public void setCancelled(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * 直前の探索で読んだ局面数
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 直前の探索が局面数か時間の上限で打ち切られたか
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * attacker の手番で、四の連続で勝てる手順を探す
+     * 見つかった手順の応手と手数は、次の探索までの間 {@link #getReply} と {@link #getDepth} で読める
+     *
+     * @param board          盤面 (変更しない)
+     * @param attacker       攻め側 (1: 黒, 2: 白)
+     * @param deadlineNanos  System.nanoTime() での打ち切り時刻
+     * @return 見つかった手順の初手 (y * サイズ + x)、見つからなければ-1
+     */
+    public int findVcf(GomokuLines board, int attacker, long deadlineNanos) {
+        return find(board, attacker, MAX_VCF_DEPTH, false, deadlineNanos);
+    }
+
+    /**
+     * attacker の手番で、四と三の連続で勝てる手順を探す
+     */
+    public int findVct(GomokuLines board, int attacker, long deadlineNanos) {
+        return find(board, attacker, MAX_VCT_DEPTH, true, deadlineNanos);
+    }
+
+    /**
+     * 直前に見つかった手順の、初手に対する受け側の応手の数
+     * 四なら止める1点、三なら止められる全ての点と四になる点
+     */
+    public int getReplyCount() {
+        return rootReplyCount;
+    }
+
+    public int getReply(int index) {
+        return rootReplies[index];
+    }
+
+    /**
+     * 直前に見つかった手順の攻め側の手数
+     */
+    public int getDepth() {
+        return rootDepth;
+    }
+
+    /**
+     * defender の手番で、相手の必勝手順 (VCF、なければVCT) を崩す手を探す
+     * 相手の初手とそれに対する応手の点に打ってみて、相手の手順が消えるかを調べる
+     * 結果は次の findDefense までの間 {@link #getDefenseCandidates} と {@link #getRefutations} で読める
+     *
+     * @return 相手に必勝手順があればtrue
+     */
+    public boolean findDefense(GomokuLines board, int defender, long deadlineNanos) {
+        var attacker = 3 - defender;
+        var vct = false;
+        var loss = findVcf(board, attacker, deadlineNanos);
+        if (loss < 0) {
+            loss = findVct(board, attacker, deadlineNanos);
+            vct = true;
+        }
+        defenseCandidateCount = 0;
+        refutationCount = 0;
+        if (loss < 0) {
+            return false;
+        }
+
+        // 続く探索で応手の配列が上書きされるため、先に写しておく
+        defenseCandidates[defenseCandidateCount++] = loss;
+        for (int i = 0; i < rootReplyCount; i++) {
+            defenseCandidates[defenseCandidateCount++] = rootReplies[i];
+        }
+        trial.copyFrom(board);
+        for (int i = 0; i < defenseCandidateCount; i++) {
+            var cell = defenseCandidates[i];
+            var x = cell % size;
+            var y = cell / size;
+            if (trial.getStone(x, y) != 0) {
+                continue;
+            }
+            // 仮に石を置いて、相手の必勝手順が残るかを調べる
+            trial.set(x, y, defender);
+            var remaining = vct ? findVct(trial, attacker, deadlineNanos) : findVcf(trial, attacker, deadlineNanos);
+            if (remaining < 0 && !aborted) {
+                refutations[refutationCount++] = cell;
+            }
+            trial.clear(x, y, defender);
+        }
+        return true;
+    }
+
+    /**
+     * 直前の findDefense での、相手の初手とそれに対する応手の点
+     * 内部の配列そのものを返すため変更してはいけない。有効なのは先頭の {@link #getDefenseCandidateCount} 個
+     */
+    public int[] getDefenseCandidates() {
+        return defenseCandidates;
+    }
+
+    public int getDefenseCandidateCount() {
+        return defenseCandidateCount;
+    }
+
+    /**
+     * 直前の findDefense での、打つと相手の必勝手順が消える点
+     * 内部の配列そのものを返すため変更してはいけない。有効なのは先頭の {@link #getRefutationCount} 個
+     */
+    public int[] getRefutations() {
+        return refutations;
+    }
+
+    public int getRefutationCount() {
+        return refutationCount;
+    }
+
+    private int find(GomokuLines board, int attacker, int maxDepth, boolean threes, long deadlineNanos) {
+        prepare(board.getSize());
+        lines.copyFrom(board);
+        nodes = 0;
+        deadline = deadlineNanos;
+        aborted = false;
+        rootMove = -1;
+        rootReplyCount = 0;
+        rootDepth = 0;
+
+        var defender = 3 - attacker;
+        var box = boxBuffer[0];
+        if (!stoneBox(box)) {
+            return -1;
+        }
+
+        // すでに五を作れるならそれで勝ち
+        var win = findFive(attacker, box);
+        if (win >= 0) {
+            rootDepth = 1;
+            return win;
+        }
+        // 相手が五を作れる点が2つ以上あれば止められない。1つならそこに打つしかない
+        var forced = -1;
+        var threats = countFives(defender, box);
+        if (threats >= 2) {
+            return -1;
+        }
+        if (threats == 1) {
+            forced = findFive(defender, box);
+        }
+
+        // 短い手順から探す
+        for (int depth = 1; depth <= maxDepth && !aborted; depth++) {
+            if (attack(attacker, depth, forced, threes, 0)) {
+                rootDepth = depth;
+                return rootMove;
+            }
+        }
+        return -1;
+    }
+
+    // 盤面の大きさが変わったときだけ、探索用の盤面と配列を確保し直す
+    private void prepare(int boardSize) {
+        if (lines != null && boardSize == size) {
+            return;
+        }
+        size = boardSize;
+        lines = new GomokuLines(boardSize);
+        trial = new GomokuLines(boardSize);
+        // 三を止める点 (1方向で最大11点) と、四になる点 (空きマス全て) が入る大きさ
+        var capacity = boardSize * boardSize + 16;
+        for (int ply = 0; ply < defenseBuffer.length; ply++) {
+            defenseBuffer[ply] = new int[capacity];
+        }
+        rootReplies = new int[capacity];
+        defenseCandidates = new int[capacity + 1];
+        refutations = new int[capacity + 1];
+    }
+
+    /**
+     * attacker の手番で depth 手以内に勝てるかを調べる
+     *
+     * @param forced 相手の四を止めるため打たなければいけない点 (なければ-1)
+     * @param ply    再帰の深さ (0 がルート)。石のある範囲 {minX, minY, maxX, maxY} は boxBuffer[ply] に入っている
+     */
+    private boolean attack(int attacker, int depth, int forced, boolean threes, int ply) {
+        if (depth == 0 || aborted) {
+            return false;
+        }
+        var box = boxBuffer[ply];
+        if (++nodes > maxNodes || (nodes % TIME_CHECK_INTERVAL == 0 && (System.nanoTime() > deadline || cancelled.getAsBoolean()))) {
+            aborted = true;
+            return false;
+        }
+
+        // 四を先に読み、三はその後に読む
+        for (int pass = 0; pass < (threes ? 2 : 1); pass++) {
+            var minX = forced >= 0 ? forced % size : Math.max(0, box[0] - 4);
+            var maxX = forced >= 0 ? forced % size : Math.min(size - 1, box[2] + 4);
+            var minY = forced >= 0 ? forced / size : Math.max(0, box[1] - 4);
+            var maxY = forced >= 0 ? forced / size : Math.min(size - 1, box[3] + 4);
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (lines.getStone(x, y) != 0 || !isNearThreat(attacker, x, y, pass == 0 ? 3 : 2)) {
+                        continue;
+                    }
+                    var result = pass == 0
+                            ? tryFour(attacker, depth, x, y, threes, ply)
+                            : tryThree(attacker, depth, x, y, ply);
+                    if (result) {
+                        return true;
+                    }
+                    if (aborted) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // (x, y) に打つと四になる場合に、その後の手順を読む
+    private boolean tryFour(int attacker, int depth, int x, int y, boolean threes, int ply) {
+        var defender = 3 - attacker;
+        var first = -1;
+        var count = 0;
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            var own = lines.window(attacker, dir, x, y, C4) | (1 << C4);
+            var cells = fiveCells(own, lines.window(defender, dir, x, y, C4), lines.boardWindow(dir, x, y, C4), 9);
+            while (cells != 0) {
+                var cell = cell(dir, x, y, Integer.numberOfTrailingZeros(cells) - C4);
+                cells &= cells - 1;
+                if (first < 0) {
+                    first = cell;
+                }
+                count++;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        if (count >= 2) {
+            // 四三ではなく四四か活四。相手は両方を止められない
+            if (ply == 0) {
+                rootMove = y * size + x;
+                rootReplies[0] = first;
+                rootReplyCount = 1;
+            }
+            return true;
+        }
+
+        // 相手は五になる点を止めるしかない
+        var reply = first;
+        var rx = reply % size;
+        var ry = reply / size;
+        lines.set(x, y, attacker);
+        lines.set(rx, ry, defender);
+        var win = false;
+        var counter = countFivesAround(defender, rx, ry);
+        if (counter < 2) {
+            var next = counter == 1 ? fiveCellAround(defender, rx, ry) : -1;
+            grow(boxBuffer[ply], x, y, rx, ry, boxBuffer[ply + 1]);
+            win = attack(attacker, depth - 1, next, threes, ply + 1);
+        }
+        lines.clear(rx, ry, defender);
+        lines.clear(x, y, attacker);
+
+        if (win && ply == 0) {
+            rootMove = y * size + x;
+            rootReplies[0] = reply;
+            rootReplyCount = 1;
+        }
+        return win;
+    }
+
+    // (x, y) に打つと三になる場合に、相手の全ての受けに対して勝てるかを読む
+    private boolean tryThree(int attacker, int depth, int x, int y, int ply) {
+        var defender = 3 - attacker;
+        lines.set(x, y, attacker);
+        try {
+            // 四にもなる手はtryFourで読んでいる
+            if (countFivesAround(attacker, x, y) > 0) {
+                return false;
+            }
+            var defenses = defenseBuffer[ply];
+            var blocks = threeDefenses(attacker, x, y, defenses);
+            if (blocks < 0) {
+                return false;
+            }
+            var grown = threeBoxBuffer[ply];
+            grow(boxBuffer[ply], x, y, x, y, grown);
+            // 三は四より弱いため、相手が四の連続で先に勝てるなら三は脅威にならない
+            System.arraycopy(grown, 0, boxBuffer[ply + 1], 0, 4);
+            if (attack(defender, COUNTER_VCF_DEPTH, -1, false, ply + 1) || aborted) {
+                return false;
+            }
+            // 相手は三を止める代わりに四を打って先手を取ることもできる
+            var count = appendFours(defender, defenses, blocks, grown);
+
+            for (int i = 0; i < count; i++) {
+                var defense = defenses[i];
+                var dx = defense % size;
+                var dy = defense / size;
+                lines.set(dx, dy, defender);
+                var win = false;
+                var counter = countFivesAround(defender, dx, dy);
+                if (counter < 2) {
+                    var next = counter == 1 ? fiveCellAround(defender, dx, dy) : -1;
+                    grow(grown, dx, dy, dx, dy, boxBuffer[ply + 1]);
+                    win = attack(attacker, depth - 1, next, true, ply + 1);
+                }
+                lines.clear(dx, dy, defender);
+                if (!win) {
+                    return false;
+                }
+            }
+
+            if (ply == 0) {
+                rootMove = y * size + x;
+                System.arraycopy(defenses, 0, rootReplies, 0, count);
+                rootReplyCount = count;
+            }
+            return true;
+        } finally {
+            lines.clear(x, y, attacker);
+        }
+    }
+
+    /**
+     * (x, y) の石で三ができていれば、それを止められる点を out に入れる
+     * 三が2方向にある場合 (三三) は止められる点がないため0を返す
+     *
+     * @return out に入れた点の数、三がなければ-1
+     */
+    private int threeDefenses(int attacker, int x, int y, int[] out) {
+        var defender = 3 - attacker;
+        var result = -1;
+        var threeCount = 0;
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            var own = lines.window(attacker, dir, x, y, C8);
+            var opp = lines.window(defender, dir, x, y, C8);
+            var board = lines.boardWindow(dir, x, y, C8);
+            if (openFourCells(own, opp, board) == 0) {
+                continue;
+            }
+            threeCount++;
+
+            // 相手の石を置くと活四が作れなくなる点
+            var empty = board & ~own & ~opp;
+            var defended = 0;
+            for (int bit = C8 - 5; bit <= C8 + 5; bit++) {
+                if ((empty & (1 << bit)) != 0 && openFourCells(own, opp | (1 << bit), board) == 0) {
+                    defended |= 1 << bit;
+                }
+            }
+            result = 0;
+            for (; defended != 0; defended &= defended - 1) {
+                out[result++] = cell(dir, x, y, Integer.numberOfTrailingZeros(defended) - C8);
+            }
+        }
+        if (threeCount >= 2) {
+            return 0;
+        }
+        return result;
+    }
+
+    // cells の先頭 count 個に続けて、player が打つと四になる点を重複なく加え、全体の数を返す
+    private int appendFours(int player, int[] cells, int count, int[] box) {
+        var initial = count;
+        for (int y = Math.max(0, box[1] - 4); y <= Math.min(size - 1, box[3] + 4); y++) {
+            for (int x = Math.max(0, box[0] - 4); x <= Math.min(size - 1, box[2] + 4); x++) {
+                if (lines.getStone(x, y) != 0 || !isNearThreat(player, x, y, 3) || !makesFour(player, x, y)) {
+                    continue;
+                }
+                var cell = y * size + x;
+                var duplicate = false;
+                for (int i = 0; i < initial; i++) {
+                    duplicate |= cells[i] == cell;
+                }
+                if (duplicate) {
+                    continue;
+                }
+                cells[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    private boolean makesFour(int player, int x, int y) {
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            var own = lines.window(player, dir, x, y, C4) | (1 << C4);
+            if (fiveCells(own, lines.window(3 - player, dir, x, y, C4), lines.boardWindow(dir, x, y, C4), 9) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 半径8のwindowで、1手打てば活四 (五になる点が2つ) になる点
+    private static int openFourCells(int own, int opp, int board) {
+        var empty = board & ~own & ~opp;
+        var result = 0;
+        for (int bit = C8 - 4; bit <= C8 + 4; bit++) {
+            if ((empty & (1 << bit)) != 0 && Integer.bitCount(fiveCells(own | (1 << bit), opp, board, 17)) >= 2) {
+                result |= 1 << bit;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * window内で、1手打てば五になる空きマスのビット列
+     *
+     * @param width windowの幅
+     */
+    static int fiveCells(int own, int opp, int board, int width) {
+        var result = 0;
+        for (int shift = 0; shift + 5 <= width; shift++) {
+            var mask = 0x1F << shift;
+            if ((board & mask) == mask && (opp & mask) == 0 && Integer.bitCount(own & mask) == 4) {
+                result |= mask & ~own;
+            }
+        }
+        return result;
+    }
+
+    // いずれかの方向で、周囲に自分の石が minStones 個以上ある点だけを候補にする
+    private boolean isNearThreat(int player, int x, int y, int minStones) {
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            if (Integer.bitCount(lines.window(player, dir, x, y, C4)) >= minStones) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // (x, y) の石を通る線で、player が五を作れる点の数
+    private int countFivesAround(int player, int x, int y) {
+        var count = 0;
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            count += Integer.bitCount(fiveCellsAround(player, dir, x, y));
+        }
+        return count;
+    }
+
+    private int fiveCellAround(int player, int x, int y) {
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            var cells = fiveCellsAround(player, dir, x, y);
+            if (cells != 0) {
+                return cell(dir, x, y, Integer.numberOfTrailingZeros(cells) - C4);
+            }
+        }
+        return -1;
+    }
+
+    private int fiveCellsAround(int player, int dir, int x, int y) {
+        return fiveCells(lines.window(player, dir, x, y, C4), lines.window(3 - player, dir, x, y, C4),
+                lines.boardWindow(dir, x, y, C4), 9);
+    }
+
+    // 盤面全体で player が五を作れる点の数 (ルートでのみ使う)
+    private int countFives(int player, int[] box) {
+        var count = 0;
+        for (int y = Math.max(0, box[1] - 4); y <= Math.min(size - 1, box[3] + 4); y++) {
+            for (int x = Math.max(0, box[0] - 4); x <= Math.min(size - 1, box[2] + 4); x++) {
+                if (lines.getStone(x, y) == 0 && makesFive(player, x, y)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int findFive(int player, int[] box) {
+        for (int y = Math.max(0, box[1] - 4); y <= Math.min(size - 1, box[3] + 4); y++) {
+            for (int x = Math.max(0, box[0] - 4); x <= Math.min(size - 1, box[2] + 4); x++) {
+                if (lines.getStone(x, y) == 0 && makesFive(player, x, y)) {
+                    return y * size + x;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean makesFive(int player, int x, int y) {
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            var m = lines.window(player, dir, x, y, C4) | (1 << C4);
+            if ((m & (m >>> 1) & (m >>> 2) & (m >>> 3) & (m >>> 4)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // (x, y) から dir 方向に offset マス進んだ点
+    private int cell(int dir, int x, int y, int offset) {
+        return (y + GomokuLines.DY[dir] * offset) * size + x + GomokuLines.DX[dir] * offset;
+    }
+
+    // 石のある範囲 {minX, minY, maxX, maxY} を box に入れる。石がなければfalse
+    private boolean stoneBox(int[] box) {
+        if (lines.getStoneCount() == 0) {
+            return false;
+        }
+        int minX = size, minY = size, maxX = -1, maxY = -1;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (lines.getStone(x, y) != 0) {
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        box[0] = minX;
+        box[1] = minY;
+        box[2] = maxX;
+        box[3] = maxY;
+        return true;
+    }
+
+    // box を2点を含むように広げた範囲を out に入れる
+    private static void grow(int[] box, int x1, int y1, int x2, int y2, int[] out) {
+        out[0] = Math.min(box[0], Math.min(x1, x2));
+        out[1] = Math.min(box[1], Math.min(y1, y2));
+        out[2] = Math.max(box[2], Math.max(x1, x2));
+        out[3] = Math.max(box[3], Math.max(y1, y2));
+    }
+}
@@ -1,206 +1,215 @@
 package me.f0reach.holofans.lobby.minigame.gomoku;
 
-import java.util.*;
-
-public class SimpleCpu {
-    private final GomokuLogic game;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+public class SimpleCpu implements GomokuCpu {
+    // 必勝手順の探索 (VCF/VCT) の上限
+    private static final int THREAT_SEARCH_NODES = 20000;
+    // 1手あたりの持ち時間の既定値 (必勝手順の探索に攻めと守りで半分ずつ使う)
+    private static final long DEFAULT_TIME_BUDGET_MILLIS = 80;
+
+    // 4方向の連続数を数えるときに切り出す前後のマス数
+    private static final int RADIUS = 4;
+
+    // 考え中の盤面と候補手 (findBestMove の間だけ設定される。複製せずにそのまま読む)
+    private GomokuLines lines;
+    private long[] candidates;
+    private int size;
     private final int cpuPlayerId;
     private final int humanPlayerId;
+    private final long threatSearchMillis;
     private final Random random = new Random();
+    // 探索用の盤面や手の一覧はこのCPUが持ち、手ごとに使い回す
+    private final GomokuThreatSearch threatSearch = new GomokuThreatSearch(THREAT_SEARCH_NODES);
+
+    public SimpleCpu(int cpuPlayerId) {
+        this(cpuPlayerId, DEFAULT_TIME_BUDGET_MILLIS);
+    }
 
-    public SimpleCpu(GomokuLogic game, int cpuPlayerId) {
-        this.game = game;
+    /**
+     * @param timeBudgetMillis 1手あたりの持ち時間 (スコアリングは一瞬で終わるため、必勝手順の探索に攻めと守りで半分ずつ使う)
+     */
+    public SimpleCpu(int cpuPlayerId, long timeBudgetMillis) {
         this.cpuPlayerId = cpuPlayerId;
         this.humanPlayerId = (cpuPlayerId == 1) ? 2 : 1;
+        this.threatSearchMillis = timeBudgetMillis / 2;
     }
 
     /**
      * CPUの手を決定する（最適化版）
+     * 盤面は複製せずにビットマスクのまま読み、候補手は GomokuLogic が差分で持つビット集合を使う
+     * 必勝手順の探索もこのCPUが持つバッファを使い回すため、戻り値以外の配列やオブジェクトを作らない
      *
      * @return {x, y} 座標の配列
      */
-    public int[] findBestMove() {
-        var boardSize = game.getBoardSize();
-        var board = new int[boardSize][boardSize];
-        // 盤面の状態を複製
-        for (int y = 0; y < boardSize; y++) {
-            for (int x = 0; x < boardSize; x++) {
-                board[y][x] = game.getStone(x, y);
-            }
-        }
-
-        // 評価対象となる空きマスリストを取得
-        Set<Integer> candidateMoves = findCandidateMoves(board);
+    @Override
+    public int[] findBestMove(GomokuLogic game, BooleanSupplier cancelled) {
+        lines = game.getLines();
+        candidates = game.getCandidates();
+        size = game.getBoardSize();
+        threatSearch.setCancelled(cancelled);
 
         // 盤面に一つも石がない場合（初手）は、中央に置く
-        if (candidateMoves.isEmpty()) {
-            int center = boardSize / 2;
+        if (lines.getStoneCount() == 0) {
+            int center = size / 2;
             return new int[]{center, center};
         }
 
         // 1. CPUが勝てる手を探す
-        int[] winMove = findWinningMove(board, cpuPlayerId, candidateMoves);
-        if (winMove != null) {
-            return winMove;
+        int winMove = findWinningMove(cpuPlayerId);
+        if (winMove >= 0) {
+            return toMove(winMove);
         }
 
         // 2. プレイヤーが勝つ手（リーチ）を阻止する
-        int[] blockMove = findWinningMove(board, humanPlayerId, candidateMoves);
-        if (blockMove != null) {
-            return blockMove;
+        int blockMove = findWinningMove(humanPlayerId);
+        if (blockMove >= 0) {
+            return toMove(blockMove);
         }
 
-        // 3. スコアリングに基づいて最適な手を見つける
-        return findMoveByScoring(board, candidateMoves);
+        // 3. 四や三を連続して勝てる手順を探し、なければ相手の手順を崩す
+        int threatMove = findThreatMove();
+        if (threatMove >= 0) {
+            return toMove(threatMove);
+        }
+
+        // 4. スコアリングに基づいて最適な手を見つける
+        return toMove(findMoveByScoring());
     }
 
     /**
-     * 評価対象となる候補手（いずれかの石に隣接する空きマス）のリストを作成する
+     * 必勝手順 (VCF/VCT) から手を決める
+     * CPUに必勝手順があればその初手を、プレイヤーにあればそれを崩す手を返す
      *
-     * @param board 盤面
-     * @return 候補となるマスのSet (キー: y * BOARD_SIZE + x)
+     * @return 見つかった場合はマスの番号 (y * size + x)、見つからなければ -1
      */
-    private Set<Integer> findCandidateMoves(int[][] board) {
-        Set<Integer> candidates = new HashSet<>();
-        int boardSize = game.getBoardSize();
-
-        for (int y = 0; y < boardSize; y++) {
-            for (int x = 0; x < boardSize; x++) {
-                // 石が置かれているマスは評価対象外
-                if (board[y][x] == 0) continue;
+    private int findThreatMove() {
+        var deadline = System.nanoTime() + threatSearchMillis * 1_000_000L;
+        var win = threatSearch.findVcf(lines, cpuPlayerId, deadline);
+        if (win < 0) {
+            win = threatSearch.findVct(lines, cpuPlayerId, deadline);
+        }
+        if (win >= 0) {
+            return win;
+        }
 
-                // 石の周囲8マスをチェック
-                for (int dy = -1; dy <= 1; dy++) {
-                    for (int dx = -1; dx <= 1; dx++) {
-                        if (dx == 0 && dy == 0) continue;
+        deadline = System.nanoTime() + threatSearchMillis * 1_000_000L;
+        if (!threatSearch.findDefense(lines, cpuPlayerId, deadline)) {
+            return -1;
+        }
+        // 崩せる手の中で最もスコアの高い手、崩せなければ候補の中で最もスコアの高い手
+        var move = findBestScoredCell(threatSearch.getRefutations(), threatSearch.getRefutationCount());
+        return move >= 0 ? move : findBestScoredCell(threatSearch.getDefenseCandidates(), threatSearch.getDefenseCandidateCount());
+    }
 
-                        int ny = y + dy;
-                        int nx = x + dx;
+    private int findBestScoredCell(int[] cells, int count) {
+        int bestMove = -1;
+        int bestScore = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            int y = cell / size;
+            int x = cell % size;
+            if (lines.getStone(x, y) != 0) continue;
 
-                        if (isValid(nx, ny) && board[ny][nx] == 0) {
-                            candidates.add(ny * boardSize + nx);
-                        }
-                    }
-                }
+            int score = calculateScore(x, y);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = cell;
             }
         }
-        return candidates;
+        return bestMove;
     }
 
-
     /**
-     * 特定のプレイヤーが勝てる（5つ並ぶ）マスを探す
+     * 特定のプレイヤーが勝てる（5つ並ぶ）マスを候補手から探す
      *
-     * @param board      盤面
-     * @param playerId   プレイヤーID
-     * @param candidates 評価対象のマス
-     * @return 見つかった場合は {x, y} 座標、見つからなければ null
+     * @param playerId プレイヤーID
+     * @return 見つかった場合はマスの番号、見つからなければ -1
      */
-    private int[] findWinningMove(int[][] board, int playerId, Set<Integer> candidates) {
-        int boardSize = game.getBoardSize();
-        for (int moveKey : candidates) {
-            int y = moveKey / boardSize;
-            int x = moveKey % boardSize;
-
-            // 仮に石を置いてみる
-            board[y][x] = playerId;
-            if (checkWinCondition(board, x, y, playerId)) {
-                board[y][x] = 0; // 元に戻す
-                return new int[]{x, y};
+    private int findWinningMove(int playerId) {
+        for (int word = 0; word < candidates.length; word++) {
+            for (long bits = candidates[word]; bits != 0; bits &= bits - 1) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (checkWinCondition(cell % size, cell / size, playerId)) {
+                    return cell;
+                }
             }
-            board[y][x] = 0; // 元に戻す
         }
-        return null;
+        return -1;
     }
 
     /**
      * スコアリングに基づいて最適な手を見つける
+     * 最高スコアのマスが複数ある場合は、リストを作らずに等確率で1つ選ぶ (リザーバサンプリング)
      */
-    private int[] findMoveByScoring(int[][] board, Set<Integer> candidates) {
+    private int findMoveByScoring() {
         int bestScore = -1;
-        List<int[]> bestMoves = new ArrayList<>();
-        int boardSize = game.getBoardSize();
-
-        for (int moveKey : candidates) {
-            int y = moveKey / boardSize;
-            int x = moveKey % boardSize;
-
-            int score = calculateScore(board, x, y);
-            if (score > bestScore) {
-                bestScore = score;
-                bestMoves.clear();
-                bestMoves.add(new int[]{x, y});
-            } else if (score == bestScore) {
-                bestMoves.add(new int[]{x, y});
+        int bestMove = -1;
+        int ties = 0;
+
+        for (int word = 0; word < candidates.length; word++) {
+            for (long bits = candidates[word]; bits != 0; bits &= bits - 1) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int score = calculateScore(cell % size, cell / size);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = cell;
+                    ties = 1;
+                } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                    bestMove = cell;
+                }
             }
         }
 
-        // 最高スコアのマスが複数ある場合はランダムに1つ選ぶ
-        if (!bestMoves.isEmpty()) {
-            return bestMoves.get(random.nextInt(bestMoves.size()));
+        if (bestMove >= 0) {
+            return bestMove;
         }
 
         // 万が一候補がない場合（通常は発生しない）、ランダムな手
-        return findRandomMove(board);
+        return findRandomMove();
     }
 
     /**
      * 指定したマスのスコアを計算する
      *
-     * @param board 盤面
-     * @param x     X座標
-     * @param y     Y座標
+     * @param x X座標
+     * @param y Y座標
      * @return スコア
      */
-    private int calculateScore(int[][] board, int x, int y) {
+    private int calculateScore(int x, int y) {
         // 自分の手を評価するスコアと、相手の手を妨害するスコアを合算
         // 相手の妨害を少し高く評価するため、重みを1.2に設定
-        return evaluatePosition(board, x, y, cpuPlayerId) +
-                (int) (evaluatePosition(board, x, y, humanPlayerId) * 1.2);
+        return evaluatePosition(x, y, cpuPlayerId) +
+                (int) (evaluatePosition(x, y, humanPlayerId) * 1.2);
     }
 
     /**
      * あるマスに石を置いた場合の、4方向の連続性を評価する
+     * 置くマス自体は数えないため、盤面に石を仮置きする必要はない
      */
-    private int evaluatePosition(int[][] board, int x, int y, int playerId) {
+    private int evaluatePosition(int x, int y, int playerId) {
         int totalScore = 0;
-        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        // 仮に石を置いて評価
-        board[y][x] = playerId;
-
-        for (int[] dir : directions) {
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
             // 自分の石が何個連続するか
-            int count = countConsecutiveStones(board, x, y, playerId, dir);
+            int count = countConsecutiveStones(x, y, playerId, dir);
             // 連続数に応じたスコアを加算 (例: 4つ並びは非常に高く評価)
             totalScore += getScoreForCount(count);
         }
-
-        // 盤面を元に戻す
-        board[y][x] = 0;
         return totalScore;
     }
 
     /**
-     * 連続した石の数を数える
+     * (x, y) の前後に連続した石の数を数える (それぞれ最大4つ)
+     * 前後4マスをビット列で切り出し、(x, y) から外側へ続く1の数を数える
      */
-    private int countConsecutiveStones(int[][] board, int x, int y, int playerId, int[] dir) {
-        int count = 0;
-        // 正の方向
-        for (int i = 1; i < 5; i++) {
-            int nx = x + dir[0] * i;
-            int ny = y + dir[1] * i;
-            if (isValid(nx, ny) && board[ny][nx] == playerId) count++;
-            else break;
-        }
-        // 負の方向
-        for (int i = 1; i < 5; i++) {
-            int nx = x - dir[0] * i;
-            int ny = y - dir[1] * i;
-            if (isValid(nx, ny) && board[ny][nx] == playerId) count++;
-            else break;
-        }
-        return count;
+    private int countConsecutiveStones(int x, int y, int playerId, int dir) {
+        int window = lines.window(playerId, dir, x, y, RADIUS);
+        // 正の方向: ビット RADIUS + 1 から上へ (盤外と範囲外のビットは0なので最大4)
+        int forward = Integer.numberOfTrailingZeros(~(window >>> (RADIUS + 1)));
+        // 負の方向: ビット RADIUS - 1 から下へ、最上位に寄せて数える
+        int backward = Integer.numberOfLeadingZeros(~(window << (Integer.SIZE - RADIUS)));
+        return forward + backward;
     }
 
     /**
@@ -225,10 +234,9 @@ public class SimpleCpu {
     /**
      * 勝利条件を満たしているか簡易チェック（findWinningMove用）
      */
-    private boolean checkWinCondition(int[][] board, int x, int y, int playerId) {
-        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-        for (int[] dir : directions) {
-            if (countConsecutiveStones(board, x, y, playerId, dir) >= 4) {
+    private boolean checkWinCondition(int x, int y, int playerId) {
+        for (int dir = 0; dir < GomokuLines.DIRECTIONS; dir++) {
+            if (countConsecutiveStones(x, y, playerId, dir) >= 4) {
                 return true;
             }
         }
@@ -237,23 +245,25 @@ public class SimpleCpu {
 
     /**
      * ランダムな空いているマスを見つける（フォールバック用）
+     * 空きマスの数から番号を選び、もう一度数えてその番号のマスを返す
      */
-    private int[] findRandomMove(int[][] board) {
-        List<int[]> emptyCells = new ArrayList<>();
-        for (int y = 0; y < game.getBoardSize(); y++) {
-            for (int x = 0; x < game.getBoardSize(); x++) {
-                if (board[y][x] == 0) {
-                    emptyCells.add(new int[]{x, y});
+    private int findRandomMove() {
+        int empty = size * size - lines.getStoneCount();
+        if (empty == 0) {
+            return -1;
+        }
+        int pick = random.nextInt(empty);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (lines.getStone(x, y) == 0 && pick-- == 0) {
+                    return y * size + x;
                 }
             }
         }
-        if (!emptyCells.isEmpty()) {
-            return emptyCells.get(random.nextInt(emptyCells.size()));
-        }
-        return null;
+        return -1;
     }
 
-    private boolean isValid(int x, int y) {
-        return x >= 0 && x < game.getBoardSize() && y >= 0 && y < game.getBoardSize();
+    private int[] toMove(int cell) {
+        return cell >= 0 ? new int[]{cell % size, cell / size} : null;
     }
-}
\ No newline at end of file
+}
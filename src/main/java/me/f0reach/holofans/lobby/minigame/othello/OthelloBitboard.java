@@ -0,0 +1,83 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+/**
+ * Bitboard primitives for an 8x8 Othello board.
+ * Square index is {@code y * 8 + x}, bit 0 is (0, 0).
+ */
+public final class OthelloBitboard {
+    public static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    public static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+
+    public static final long INITIAL_BLACK = (1L << square(4, 3)) | (1L << square(3, 4));
+    public static final long INITIAL_WHITE = (1L << square(3, 3)) | (1L << square(4, 4));
+
+    // E, W, S, N, SE, SW, NE, NW
+    private static final int[] SHIFTS = {1, -1, 8, -8, 9, 7, -7, -9};
+    private static final long[] MASKS = {
+            NOT_A_FILE, NOT_H_FILE, -1L, -1L,
+            NOT_A_FILE, NOT_H_FILE, NOT_A_FILE, NOT_H_FILE
+    };
+
+    private OthelloBitboard() {
+    }
+
+    public static int square(int x, int y) {
+        return y * 8 + x;
+    }
+
+    public static int squareX(int square) {
+        return square & 7;
+    }
+
+    public static int squareY(int square) {
+        return square >>> 3;
+    }
+
+    private static long shift(long bits, int dir) {
+        var amount = SHIFTS[dir];
+        return (amount > 0 ? bits << amount : bits >>> -amount) & MASKS[dir];
+    }
+
+    /**
+     * Squares where {@code player} can legally place a disk.
+     */
+    public static long legalMoves(long player, long opponent) {
+        var empty = ~(player | opponent);
+        var moves = 0L;
+        for (int dir = 0; dir < 8; dir++) {
+            var line = shift(player, dir) & opponent;
+            line |= shift(line, dir) & opponent;
+            line |= shift(line, dir) & opponent;
+            line |= shift(line, dir) & opponent;
+            line |= shift(line, dir) & opponent;
+            line |= shift(line, dir) & opponent;
+            moves |= shift(line, dir) & empty;
+        }
+        return moves;
+    }
+
+    /**
+     * Opponent disks flipped when {@code player} places at {@code square}.
+     * Returns 0 when the move is illegal.
+     */
+    public static long flips(long player, long opponent, int square) {
+        var origin = 1L << square;
+        if (((player | opponent) & origin) != 0) {
+            return 0;
+        }
+
+        var flipped = 0L;
+        for (int dir = 0; dir < 8; dir++) {
+            var line = 0L;
+            var next = shift(origin, dir);
+            while ((next & opponent) != 0) {
+                line |= next;
+                next = shift(next, dir);
+            }
+            if ((next & player) != 0) {
+                flipped |= line;
+            }
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,86 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Writes the board into the world, touching only squares that differ from the last rendered state.
+ * All render requests within a tick are coalesced into one flush on the next tick.
+ */
+public class OthelloBoardRenderer {
+    public static final Material BLACK_DISK = Material.BLACK_CARPET;
+    public static final Material WHITE_DISK = Material.WHITE_CARPET;
+
+    private final Plugin plugin;
+    private final OthelloTableConfig config;
+    private final OthelloLogic logic;
+
+    // Last state written to the world
+    private long renderedBlack;
+    private long renderedWhite;
+    private boolean valid = false;
+
+    private World pendingWorld;
+
+    public OthelloBoardRenderer(Plugin plugin, OthelloTableConfig config, OthelloLogic logic) {
+        this.plugin = plugin;
+        this.config = config;
+        this.logic = logic;
+    }
+
+    /**
+     * Forgets the rendered state, so the next flush rewrites every square.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    public void requestRender(World world) {
+        if (pendingWorld == null) {
+            plugin.getServer().getScheduler().runTask(plugin, this::flush);
+        }
+        pendingWorld = world;
+    }
+
+    private void flush() {
+        var world = pendingWorld;
+        pendingWorld = null;
+        if (world == null) return;
+
+        var black = logic.getBoard(OthelloPlayer.BLACK);
+        var white = logic.getBoard(OthelloPlayer.WHITE);
+        var changed = valid ? (black ^ renderedBlack) | (white ^ renderedWhite) : -1L;
+
+        while (changed != 0) {
+            var square = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+
+            var bit = 1L << square;
+            var material = (black & bit) != 0 ? BLACK_DISK :
+                    (white & bit) != 0 ? WHITE_DISK : Material.AIR;
+            var block = world.getBlockAt(
+                    blockX(OthelloBitboard.squareX(square)),
+                    config.getPos1().getBlockY(),
+                    blockZ(OthelloBitboard.squareY(square)));
+            if (block.getType() != material) {
+                // Carpets need no physics or neighbour updates
+                block.setType(material, false);
+            }
+        }
+
+        renderedBlack = black;
+        renderedWhite = white;
+        valid = true;
+    }
+
+    private int blockX(int x) {
+        var isIncreaseX = config.getPos1().getBlockX() < config.getPos2().getBlockX();
+        return config.getPos1().getBlockX() + x * 2 * (isIncreaseX ? 1 : -1);
+    }
+
+    private int blockZ(int y) {
+        var isIncreaseZ = config.getPos1().getBlockZ() < config.getPos2().getBlockZ();
+        return config.getPos1().getBlockZ() + y * 2 * (isIncreaseZ ? 1 : -1);
+    }
+}
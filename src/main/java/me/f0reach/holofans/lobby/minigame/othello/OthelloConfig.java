@@ -1,15 +1,26 @@
 package me.f0reach.holofans.lobby.minigame.othello;
 
 import org.bukkit.plugin.Plugin;
-import org.bukkit.util.BoundingBox;
-import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 public class OthelloConfig {
     private final Plugin plugin;
 
-    private String world;
-    private Vector pos1, pos2;
-    private BoundingBox boundingBox;
+    private final List<OthelloTableConfig> tables = new ArrayList<>();
+    private OthelloDifficulty cpuDifficulty = OthelloDifficulty.NORMAL;
+    private OthelloEngine cpuEngine = OthelloEngine.ALPHABETA;
+    private int cpuMctsNodes = 1_000_000;
+    private long cpuTimeBudget = OthelloDifficulty.NORMAL.getDefaultTimeBudget();
+    private int cpuHashSize = 16;
+    private int cpuHelperThreads = 2;
+    private long cpuEndgameNodeLimit = 30_000_000L;
+    private boolean cpuDebug = false;
+    private String cpuBookFile = null;
+    private int cpuBookMaxPly = 12;
 
     public OthelloConfig(Plugin plugin) {
         this.plugin = plugin;
@@ -22,25 +33,110 @@ public class OthelloConfig {
             return;
         }
 
-        world = section.getString("world");
-        pos1 = section.getVector("pos1");
-        pos2 = section.getVector("pos2");
-        boundingBox = BoundingBox.of(pos1, pos2).expand(5.0);
+        tables.clear();
+        var tablesSection = section.getConfigurationSection("tables");
+        if (tablesSection != null) {
+            for (var name : tablesSection.getKeys(false)) {
+                var tableSection = tablesSection.getConfigurationSection(name);
+                if (tableSection == null) continue;
+                var table = OthelloTableConfig.load(plugin, name, tableSection);
+                if (table != null) {
+                    tables.add(table);
+                }
+            }
+        } else if (section.contains("pos1")) {
+            // Single table written directly under the othello section
+            var table = OthelloTableConfig.load(plugin, "default", section);
+            if (table != null) {
+                tables.add(table);
+            }
+        }
+        if (tables.isEmpty()) {
+            plugin.getLogger().warning("No othello tables configured");
+        }
+
+        var difficulty = section.getString("cpu.difficulty", "normal");
+        try {
+            cpuDifficulty = OthelloDifficulty.valueOf(difficulty.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid othello cpu difficulty: " + difficulty + ". Using normal.");
+            cpuDifficulty = OthelloDifficulty.NORMAL;
+        }
+        cpuTimeBudget = section.getLong("cpu.timeBudget." + cpuDifficulty.name().toLowerCase(Locale.ROOT),
+                cpuDifficulty.getDefaultTimeBudget());
+
+        var engine = section.getString("cpu.engine", "alphabeta");
+        try {
+            cpuEngine = OthelloEngine.valueOf(engine.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid othello cpu engine: " + engine + ". Using alphabeta.");
+            cpuEngine = OthelloEngine.ALPHABETA;
+        }
+        cpuMctsNodes = section.getInt("cpu.mctsNodes", 1_000_000);
+        if (cpuMctsNodes < 10_000 || cpuMctsNodes > 50_000_000) {
+            plugin.getLogger().warning("Invalid othello cpu mcts node count: " + cpuMctsNodes + ". Using 1000000.");
+            cpuMctsNodes = 1_000_000;
+        }
+
+        cpuHashSize = section.getInt("cpu.hashSize", 16);
+        if (cpuHashSize < 1 || cpuHashSize > 1024) {
+            plugin.getLogger().warning("Invalid othello cpu hash size: " + cpuHashSize + "MB. Using 16MB.");
+            cpuHashSize = 16;
+        }
+        cpuHelperThreads = section.getInt("cpu.helperThreads", 2);
+        if (cpuHelperThreads < 0 || cpuHelperThreads > 63) {
+            plugin.getLogger().warning("Invalid othello cpu helper thread count: " + cpuHelperThreads + ". Using 2.");
+            cpuHelperThreads = 2;
+        }
+        cpuEndgameNodeLimit = section.getLong("cpu.endgameNodeLimit", 30_000_000L);
+        cpuDebug = section.getBoolean("cpu.debug", false);
+        cpuBookFile = section.getBoolean("cpu.book.enabled", true)
+                ? section.getString("cpu.book.file", "othello-book.bin")
+                : null;
+        cpuBookMaxPly = section.getInt("cpu.book.maxPly", 12);
+    }
+
+    public List<OthelloTableConfig> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    public OthelloDifficulty getCpuDifficulty() {
+        return cpuDifficulty;
+    }
+
+    public OthelloEngine getCpuEngine() {
+        return cpuEngine;
+    }
+
+    public int getCpuMctsNodes() {
+        return cpuMctsNodes;
+    }
+
+    public long getCpuTimeBudget() {
+        return cpuTimeBudget;
+    }
+
+    public int getCpuHashSize() {
+        return cpuHashSize;
+    }
+
+    public int getCpuHelperThreads() {
+        return cpuHelperThreads;
     }
 
-    public BoundingBox getBoundingBox() {
-        return boundingBox;
+    public long getCpuEndgameNodeLimit() {
+        return cpuEndgameNodeLimit;
     }
 
-    public String getWorld() {
-        return world;
+    public boolean isCpuDebug() {
+        return cpuDebug;
     }
 
-    public Vector getPos1() {
-        return pos1;
+    public String getCpuBookFile() {
+        return cpuBookFile;
     }
 
-    public Vector getPos2() {
-        return pos2;
+    public int getCpuBookMaxPly() {
+        return cpuBookMaxPly;
     }
 }
@@ -0,0 +1,363 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the Othello search on a worker thread against a board snapshot
+ * and hands the chosen move back on the server thread.
+ * One instance is shared by all tables, so they also share the transposition table and the book.
+ * Searches and their Lazy SMP helpers run on a bounded executor owned by this instance, see {@link #shutdown()}.
+ */
+public class OthelloCpu {
+    private final Plugin plugin;
+    private final OthelloConfig config;
+
+    private OthelloTranspositionTable table;
+    private int tableSize;
+    private OthelloOpeningBook book;
+    private OthelloWeights weights;
+
+    private final ThreadPoolExecutor executor;
+    private final Set<Task> running = ConcurrentHashMap.newKeySet();
+    // Preallocated MCTS trees, reused across moves
+    private final Queue<OthelloMcts> mctsTrees = new ConcurrentLinkedQueue<>();
+    private volatile int mctsNodes;
+
+    public OthelloCpu(Plugin plugin, OthelloConfig config) {
+        this.plugin = plugin;
+        this.config = config;
+
+        var threadCount = new AtomicInteger();
+        var threads = poolSize();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64), r -> {
+            var thread = new Thread(r, "Othello CPU #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        try {
+            weights = OthelloWeights.loadDefault();
+            if (weights == null) {
+                plugin.getLogger().warning("Othello pattern weights not found, using the simple evaluation");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to load othello pattern weights: " + e.getMessage());
+        }
+    }
+
+    /**
+     * (Re)allocates the transposition table when its configured size has changed and reopens the book.
+     */
+    public void reloadConfig() {
+        var threads = poolSize();
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+
+        if (mctsNodes != config.getCpuMctsNodes()) {
+            mctsNodes = config.getCpuMctsNodes();
+            mctsTrees.clear();
+        }
+
+        var size = config.getCpuHashSize();
+        if (table == null || tableSize != size) {
+            table = new OthelloTranspositionTable(size);
+            tableSize = size;
+        }
+
+        book = null;
+        if (config.getCpuBookFile() == null) return;
+        var bookPath = plugin.getDataFolder().toPath().resolve(config.getCpuBookFile());
+        if (!bookPath.toFile().isFile()) {
+            plugin.getLogger().info("Othello opening book not found: " + bookPath);
+            return;
+        }
+        try {
+            book = OthelloOpeningBook.open(bookPath);
+            plugin.getLogger().info("Loaded othello opening book with " + book.size() + " positions");
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to open othello opening book: " + e.getMessage());
+        }
+    }
+
+    // Every table may think at the same time, each with its helpers
+    private int poolSize() {
+        return (1 + config.getCpuHelperThreads()) * Math.max(1, config.getTables().size());
+    }
+
+    private OthelloMcts borrowTree() {
+        var tree = mctsTrees.poll();
+        return tree != null ? tree : new OthelloMcts(mctsNodes);
+    }
+
+    private void releaseTree(OthelloMcts tree) {
+        // Trees of an old size are dropped after a reload
+        if (tree.getCapacity() == mctsNodes) {
+            mctsTrees.offer(tree);
+        }
+    }
+
+    /**
+     * Stops all searches and the worker threads. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        for (var task : running) {
+            task.cancel();
+        }
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Othello CPU threads did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts searching the current position of {@code logic}.
+     * {@code callback} receives the chosen square (or {@link OthelloSearch#PASS}) on the main thread,
+     * unless the returned request has been cancelled in the meantime.
+     */
+    public Request requestMove(OthelloLogic logic, IntConsumer callback) {
+        if (table == null) {
+            reloadConfig();
+        }
+
+        var current = logic.getCurrentPlayer();
+        var opponent = current == OthelloPlayer.BLACK ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
+        var task = new Task(logic.getBoard(current), logic.getBoard(opponent), current, logic.getHash());
+        var request = new Request(task);
+
+        try {
+            executor.execute(() -> {
+                int move;
+                running.add(task);
+                try {
+                    move = task.think();
+                } finally {
+                    running.remove(task);
+                }
+                if (!plugin.isEnabled()) return;
+
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    if (!request.isActive()) return;
+                    request.done = true;
+                    callback.accept(move);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("Othello CPU is overloaded, dropping a move request");
+            request.done = true;
+        }
+        return request;
+    }
+
+    public static class Request {
+        private final Task task;
+        // Main thread only
+        private boolean cancelled = false;
+        private boolean done = false;
+
+        private Request(Task task) {
+            this.task = task;
+        }
+
+        public boolean isActive() {
+            return !cancelled && !done;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            task.cancel();
+        }
+    }
+
+    private class Task {
+        private final long player;
+        private final long opponent;
+        private final OthelloPlayer color;
+        private final long hash;
+        private final int maxDepth = config.getCpuDifficulty().getMaxDepth();
+        private final int endgameEmpties = config.getCpuDifficulty().getEndgameEmpties();
+        private final long timeBudget = config.getCpuTimeBudget();
+        private final long endgameNodeLimit = config.getCpuEndgameNodeLimit();
+        private final boolean debug = config.isCpuDebug();
+        private final OthelloOpeningBook openingBook = book;
+        private final int bookMaxPly = config.getCpuBookMaxPly();
+        private final int helperCount = config.getCpuHelperThreads();
+        private final OthelloEngine engine = config.getCpuEngine();
+        private volatile boolean cancelled = false;
+        private volatile boolean mctsDone = false;
+        private final OthelloSearch search = new OthelloSearch(table, weights);
+        private final OthelloSearch[] helpers = new OthelloSearch[helperCount];
+        private final OthelloEndgameSolver solver = new OthelloEndgameSolver();
+
+        private Task(long player, long opponent, OthelloPlayer color, long hash) {
+            this.player = player;
+            this.opponent = opponent;
+            this.color = color;
+            this.hash = hash;
+            for (int i = 0; i < helperCount; i++) {
+                helpers[i] = new OthelloSearch(table, weights, i + 1);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            search.cancel();
+            solver.cancel();
+            for (var helper : helpers) {
+                helper.cancel();
+            }
+        }
+
+        // Worker thread
+        private int think() {
+            var start = System.nanoTime();
+            var empties = Long.bitCount(~(player | opponent));
+
+            // The book holds alpha-beta choices, mcts keeps its own style
+            if (openingBook != null && engine == OthelloEngine.ALPHABETA && 60 - empties < bookMaxPly) {
+                var move = openingBook.lookup(player, opponent);
+                if (move != OthelloSearch.PASS) {
+                    if (debug) {
+                        plugin.getLogger().info("Othello book: move=" + move);
+                    }
+                    return move;
+                }
+            }
+
+            if (empties <= endgameEmpties) {
+                // Leave a quarter of the budget for the heuristic search if the solver gives up
+                var solved = solver.solve(player, opponent, endgameNodeLimit, timeBudget * 3 / 4);
+                if (debug) {
+                    plugin.getLogger().info("Othello endgame: empties=" + empties + " move=" + solved.move()
+                            + " score=" + solved.score() + " complete=" + solved.complete()
+                            + " nodes=" + solved.nodes() + " nps=" + solved.nodesPerSecond());
+                }
+                if (solved.complete()) {
+                    return solved.move();
+                }
+            }
+
+            var remaining = Math.max(timeBudget - (System.nanoTime() - start) / 1_000_000L, 50);
+            if (engine == OthelloEngine.MCTS) {
+                return thinkMcts(remaining);
+            }
+
+            for (var helper : helpers) {
+                try {
+                    executor.execute(() -> helper.search(player, opponent, color, hash, maxDepth, remaining));
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            OthelloSearch.Result result;
+            try {
+                result = search.search(player, opponent, color, hash, maxDepth, remaining);
+            } finally {
+                // Helpers only feed the shared table, stop them with the main search
+                for (var helper : helpers) {
+                    helper.cancel();
+                }
+            }
+            if (debug) {
+                plugin.getLogger().info("Othello search: helpers=" + helperCount + " depth=" + result.depth() + " move=" + result.move()
+                        + " score=" + result.score() + " nodes=" + result.nodes()
+                        + " nps=" + result.nodesPerSecond());
+            }
+            return result.move();
+        }
+
+        // Root parallel: every thread grows its own tree, the root visits are summed
+        private int thinkMcts(long remaining) {
+            var results = new AtomicReferenceArray<long[]>(helperCount);
+            var finished = new CountDownLatch(helperCount);
+            for (int i = 0; i < helperCount; i++) {
+                var index = i;
+                var tree = borrowTree();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            tree.search(player, opponent, remaining, seed(index + 1), () -> cancelled || mctsDone);
+                            var visits = new long[OthelloMcts.PASS_INDEX + 1];
+                            tree.addRootVisits(visits);
+                            results.set(index, visits);
+                        } finally {
+                            releaseTree(tree);
+                            finished.countDown();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    releaseTree(tree);
+                    finished.countDown();
+                }
+            }
+
+            var tree = borrowTree();
+            var visits = new long[OthelloMcts.PASS_INDEX + 1];
+            OthelloMcts.Result result;
+            try {
+                result = tree.search(player, opponent, remaining, seed(0), () -> cancelled);
+                tree.addRootVisits(visits);
+            } finally {
+                releaseTree(tree);
+                mctsDone = true;
+            }
+            if (result.move() == OthelloSearch.PASS) {
+                return OthelloSearch.PASS;
+            }
+
+            try {
+                // Helpers stop within a few playouts, queued ones that never started are skipped
+                finished.await(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (int i = 0; i < helperCount; i++) {
+                var helperVisits = results.get(i);
+                if (helperVisits == null) continue;
+                for (int square = 0; square < visits.length; square++) {
+                    visits[square] += helperVisits[square];
+                }
+            }
+
+            var best = result.move();
+            for (int square = 0; square < 64; square++) {
+                if (visits[square] > visits[best]) {
+                    best = square;
+                }
+            }
+            if (debug) {
+                plugin.getLogger().info("Othello mcts: helpers=" + helperCount + " move=" + best
+                        + " winRate=" + String.format("%.3f", result.winRate()) + " iterations=" + result.iterations()
+                        + " nodes=" + result.nodes() + " ips=" + result.iterationsPerSecond());
+            }
+            return best;
+        }
+
+        private long seed(int thread) {
+            return System.nanoTime() ^ hash ^ (thread * 0x9E3779B97F4A7C15L);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+public enum OthelloDifficulty {
+    EASY(2, 200, 0),
+    NORMAL(6, 1000, 12),
+    HARD(60, 3000, 16);
+
+    private final int maxDepth;
+    private final long defaultTimeBudget;
+    // Solve exactly from this many empty squares, 0 disables the solver
+    private final int endgameEmpties;
+
+    OthelloDifficulty(int maxDepth, long defaultTimeBudget, int endgameEmpties) {
+        this.maxDepth = maxDepth;
+        this.defaultTimeBudget = defaultTimeBudget;
+        this.endgameEmpties = endgameEmpties;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getDefaultTimeBudget() {
+        return defaultTimeBudget;
+    }
+
+    public int getEndgameEmpties() {
+        return endgameEmpties;
+    }
+}
@@ -0,0 +1,333 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+/**
+ * Exact solver for the last empty squares of a game, scores are final disk differences.
+ * Uses fastest-first ordering while many squares are empty, quadrant parity ordering near the end,
+ * and unrolled routines for the last four empties.
+ * Not thread-safe, use one instance per running search.
+ */
+public class OthelloEndgameSolver {
+    private static final int INFINITY = 1000;
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+    private static final long TIME_CHECK_INTERVAL = 4096;
+
+    private static final long[] QUADRANTS = {
+            0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+            0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    public record Result(int move, int score, long nodes, long elapsedNanos, boolean complete) {
+        public long nodesPerSecond() {
+            return elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+        }
+    }
+
+    // Move ordering buffers, indexed by the number of empties
+    private final int[][] orderSquares = new int[65][64];
+    private final int[][] orderKeys = new int[65][64];
+
+    private volatile boolean cancelled;
+    private boolean aborted;
+    private long deadline;
+    private long nodeLimit;
+    private long nodes;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Solves the position for {@code player}. When the node limit or the time budget is exhausted
+     * the result is marked incomplete and must not be trusted.
+     */
+    public Result solve(long player, long opponent, long nodeLimit, long timeBudgetMillis) {
+        var start = System.nanoTime();
+        this.deadline = start + timeBudgetMillis * 1_000_000L;
+        this.nodeLimit = nodeLimit;
+        this.nodes = 0;
+        this.aborted = false;
+
+        var moves = OthelloBitboard.legalMoves(player, opponent);
+        if (moves == 0) {
+            var score = OthelloBitboard.legalMoves(opponent, player) == 0
+                    ? finalScore(player, opponent)
+                    : -solve(opponent, player, -INFINITY, INFINITY, Long.bitCount(~(player | opponent)));
+            return new Result(OthelloSearch.PASS, score, nodes, System.nanoTime() - start, !aborted);
+        }
+
+        var empties = Long.bitCount(~(player | opponent));
+        var count = orderMoves(player, opponent, moves, empties);
+        var squares = orderSquares[empties];
+        var bestMove = squares[0];
+        var alpha = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            var square = squares[i];
+            var flipped = OthelloBitboard.flips(player, opponent, square);
+            var score = -solve(opponent & ~flipped, player | flipped | (1L << square), -INFINITY, -alpha, empties - 1);
+            if (aborted) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = square;
+            }
+        }
+
+        return new Result(bestMove, alpha, nodes, System.nanoTime() - start, !aborted);
+    }
+
+    private boolean checkAbort() {
+        nodes++;
+        if (nodes >= nodeLimit
+                || ((nodes % TIME_CHECK_INTERVAL) == 0 && (cancelled || System.nanoTime() > deadline))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    private int solve(long player, long opponent, int alpha, int beta, int empties) {
+        if (empties <= 4) {
+            return solveLast(player, opponent, alpha, beta, empties);
+        }
+        if (checkAbort()) {
+            return 0;
+        }
+
+        var moves = OthelloBitboard.legalMoves(player, opponent);
+        if (moves == 0) {
+            if (OthelloBitboard.legalMoves(opponent, player) == 0) {
+                return finalScore(player, opponent);
+            }
+            return -solve(opponent, player, -beta, -alpha, empties);
+        }
+
+        var count = orderMoves(player, opponent, moves, empties);
+        var squares = orderSquares[empties];
+        var best = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            var square = squares[i];
+            var flipped = OthelloBitboard.flips(player, opponent, square);
+            var score = -solve(opponent & ~flipped, player | flipped | (1L << square), -beta, -alpha, empties - 1);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fills {@code orderSquares[empties]} with the moves in search order and returns their count.
+     */
+    private int orderMoves(long player, long opponent, long moves, int empties) {
+        var squares = orderSquares[empties];
+        var count = 0;
+
+        if (empties > FASTEST_FIRST_EMPTIES) {
+            // Fastest-first: fewest replies for the opponent, then odd quadrants
+            var keys = orderKeys[empties];
+            var odd = oddQuadrants(~(player | opponent));
+            while (moves != 0) {
+                var square = Long.numberOfTrailingZeros(moves);
+                var bit = moves & -moves;
+                moves &= moves - 1;
+
+                var flipped = OthelloBitboard.flips(player, opponent, square);
+                var replies = Long.bitCount(OthelloBitboard.legalMoves(opponent & ~flipped, player | flipped | bit));
+                var key = replies * 2 + ((odd & bit) != 0 ? 0 : 1);
+
+                // Insertion sort, the lists are short
+                var i = count++;
+                while (i > 0 && keys[i - 1] > key) {
+                    keys[i] = keys[i - 1];
+                    squares[i] = squares[i - 1];
+                    i--;
+                }
+                keys[i] = key;
+                squares[i] = square;
+            }
+            return count;
+        }
+
+        // Parity: moves in quadrants with an odd number of empties first
+        var odd = oddQuadrants(~(player | opponent));
+        var first = moves & odd;
+        var second = moves & ~odd;
+        while (first != 0) {
+            squares[count++] = Long.numberOfTrailingZeros(first);
+            first &= first - 1;
+        }
+        while (second != 0) {
+            squares[count++] = Long.numberOfTrailingZeros(second);
+            second &= second - 1;
+        }
+        return count;
+    }
+
+    private static long oddQuadrants(long empty) {
+        var odd = 0L;
+        for (var quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+
+    // Last empties, no move generation: only the remaining squares are tried
+
+    private int solveLast(long player, long opponent, int alpha, int beta, int empties) {
+        var empty = ~(player | opponent);
+        // Odd quadrants first
+        var odd = oddQuadrants(empty);
+        var ordered = empty & odd;
+        var rest = empty & ~odd;
+        var s1 = -1;
+        var s2 = -1;
+        var s3 = -1;
+        var s4 = -1;
+        for (int i = 0; i < empties; i++) {
+            int square;
+            if (ordered != 0) {
+                square = Long.numberOfTrailingZeros(ordered);
+                ordered &= ordered - 1;
+            } else {
+                square = Long.numberOfTrailingZeros(rest);
+                rest &= rest - 1;
+            }
+            switch (i) {
+                case 0 -> s1 = square;
+                case 1 -> s2 = square;
+                case 2 -> s3 = square;
+                default -> s4 = square;
+            }
+        }
+
+        return switch (empties) {
+            case 4 -> solve4(player, opponent, alpha, beta, s1, s2, s3, s4, false);
+            case 3 -> solve3(player, opponent, alpha, beta, s1, s2, s3, false);
+            case 2 -> solve2(player, opponent, alpha, beta, s1, s2, false);
+            case 1 -> solve1(player, opponent, s1);
+            default -> finalScore(player, opponent);
+        };
+    }
+
+    private int solve4(long player, long opponent, int alpha, int beta, int s1, int s2, int s3, int s4, boolean passed) {
+        if (checkAbort()) {
+            return 0;
+        }
+        var best = -INFINITY;
+        long flipped;
+        if ((flipped = OthelloBitboard.flips(player, opponent, s1)) != 0) {
+            best = -solve3(opponent & ~flipped, player | flipped | (1L << s1), -beta, -alpha, s2, s3, s4, false);
+            if (best >= beta) return best;
+            alpha = Math.max(alpha, best);
+        }
+        if ((flipped = OthelloBitboard.flips(player, opponent, s2)) != 0) {
+            var score = -solve3(opponent & ~flipped, player | flipped | (1L << s2), -beta, -alpha, s1, s3, s4, false);
+            if (score >= beta) return score;
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        if ((flipped = OthelloBitboard.flips(player, opponent, s3)) != 0) {
+            var score = -solve3(opponent & ~flipped, player | flipped | (1L << s3), -beta, -alpha, s1, s2, s4, false);
+            if (score >= beta) return score;
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        if ((flipped = OthelloBitboard.flips(player, opponent, s4)) != 0) {
+            var score = -solve3(opponent & ~flipped, player | flipped | (1L << s4), -beta, -alpha, s1, s2, s3, false);
+            if (score > best) {
+                best = score;
+            }
+        }
+        if (best == -INFINITY) {
+            return passed
+                    ? finalScore(player, opponent)
+                    : -solve4(opponent, player, -beta, -alpha, s1, s2, s3, s4, true);
+        }
+        return best;
+    }
+
+    private int solve3(long player, long opponent, int alpha, int beta, int s1, int s2, int s3, boolean passed) {
+        nodes++;
+        var best = -INFINITY;
+        long flipped;
+        if ((flipped = OthelloBitboard.flips(player, opponent, s1)) != 0) {
+            best = -solve2(opponent & ~flipped, player | flipped | (1L << s1), -beta, -alpha, s2, s3, false);
+            if (best >= beta) return best;
+            alpha = Math.max(alpha, best);
+        }
+        if ((flipped = OthelloBitboard.flips(player, opponent, s2)) != 0) {
+            var score = -solve2(opponent & ~flipped, player | flipped | (1L << s2), -beta, -alpha, s1, s3, false);
+            if (score >= beta) return score;
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        if ((flipped = OthelloBitboard.flips(player, opponent, s3)) != 0) {
+            var score = -solve2(opponent & ~flipped, player | flipped | (1L << s3), -beta, -alpha, s1, s2, false);
+            if (score > best) {
+                best = score;
+            }
+        }
+        if (best == -INFINITY) {
+            return passed
+                    ? finalScore(player, opponent)
+                    : -solve3(opponent, player, -beta, -alpha, s1, s2, s3, true);
+        }
+        return best;
+    }
+
+    private int solve2(long player, long opponent, int alpha, int beta, int s1, int s2, boolean passed) {
+        nodes++;
+        var best = -INFINITY;
+        long flipped;
+        if ((flipped = OthelloBitboard.flips(player, opponent, s1)) != 0) {
+            best = -solve1(opponent & ~flipped, player | flipped | (1L << s1), s2);
+            if (best >= beta) return best;
+        }
+        if ((flipped = OthelloBitboard.flips(player, opponent, s2)) != 0) {
+            var score = -solve1(opponent & ~flipped, player | flipped | (1L << s2), s1);
+            if (score > best) {
+                best = score;
+            }
+        }
+        if (best == -INFINITY) {
+            return passed
+                    ? finalScore(player, opponent)
+                    : -solve2(opponent, player, -beta, -alpha, s1, s2, true);
+        }
+        return best;
+    }
+
+    private int solve1(long player, long opponent, int square) {
+        nodes++;
+        var flipped = OthelloBitboard.flips(player, opponent, square);
+        if (flipped != 0) {
+            return finalScore(player | flipped | (1L << square), opponent & ~flipped);
+        }
+        flipped = OthelloBitboard.flips(opponent, player, square);
+        if (flipped != 0) {
+            return finalScore(player & ~flipped, opponent | flipped | (1L << square));
+        }
+        return finalScore(player, opponent);
+    }
+
+    private static int finalScore(long player, long opponent) {
+        return Long.bitCount(player) - Long.bitCount(opponent);
+    }
+}
@@ -0,0 +1,8 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+public enum OthelloEngine {
+    // Iterative deepening alpha-beta with the pattern evaluation
+    ALPHABETA,
+    // Monte Carlo tree search with random playouts
+    MCTS
+}
@@ -0,0 +1,73 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+/**
+ * Pattern evaluation with incrementally maintained pattern indices.
+ * {@link #play} and {@link #undo} adjust only the instances touching the changed squares,
+ * so an evaluation is one weight lookup per instance.
+ * Not thread-safe, use one instance per running search.
+ */
+public class OthelloEvaluator {
+    private final OthelloWeights weights;
+    private final int[] indices = new int[OthelloPatterns.INSTANCE_COUNT];
+
+    public OthelloEvaluator(OthelloWeights weights) {
+        this.weights = weights;
+    }
+
+    public void set(long black, long white) {
+        for (int instance = 0; instance < indices.length; instance++) {
+            var squares = OthelloPatterns.INSTANCE_SQUARES[instance];
+            var index = 0;
+            for (int i = squares.length - 1; i >= 0; i--) {
+                var bit = 1L << squares[i];
+                index = index * 3 + ((black & bit) != 0 ? 1 : (white & bit) != 0 ? 2 : 0);
+            }
+            indices[instance] = index;
+        }
+    }
+
+    public void play(OthelloPlayer color, int square, long flipped) {
+        update(color, square, flipped, 1);
+    }
+
+    public void undo(OthelloPlayer color, int square, long flipped) {
+        update(color, square, flipped, -1);
+    }
+
+    private void update(OthelloPlayer color, int square, long flipped, int sign) {
+        // Placed disk: empty -> color, flipped disks: opponent -> color
+        var placed = color == OthelloPlayer.BLACK ? 1 : 2;
+        var flip = color == OthelloPlayer.BLACK ? -1 : 1;
+        add(square, placed * sign);
+        while (flipped != 0) {
+            add(Long.numberOfTrailingZeros(flipped), flip * sign);
+            flipped &= flipped - 1;
+        }
+    }
+
+    private void add(int square, int delta) {
+        var features = OthelloPatterns.SQUARE_FEATURES[square];
+        for (int i = 0; i < features.length; i += 2) {
+            indices[features[i]] += delta * features[i + 1];
+        }
+    }
+
+    int index(int instance) {
+        return indices[instance];
+    }
+
+    /**
+     * Scores the position for {@code color} to move, in 1/{@link OthelloWeights#SCALE} disks.
+     */
+    public int evaluate(OthelloPlayer color, int empties) {
+        var phase = weights.phase(OthelloPatterns.phase(empties));
+        var score = 0;
+        for (int instance = 0; instance < indices.length; instance++) {
+            score += phase[OthelloPatterns.INSTANCE_OFFSETS[instance] + indices[instance]];
+        }
+        if (color == OthelloPlayer.BLACK) {
+            return score + phase[OthelloPatterns.TEMPO_OFFSET];
+        }
+        return -(score + phase[OthelloPatterns.TEMPO_OFFSET + 1]);
+    }
+}
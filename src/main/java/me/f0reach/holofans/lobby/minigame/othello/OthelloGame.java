@@ -1,17 +1,8 @@
 package me.f0reach.holofans.lobby.minigame.othello;
 
-import io.papermc.paper.block.BlockPredicate;
-import io.papermc.paper.datacomponent.DataComponentTypes;
-import io.papermc.paper.datacomponent.item.ItemAdventurePredicate;
-import io.papermc.paper.registry.RegistryKey;
-import io.papermc.paper.registry.keys.BlockTypeKeys;
-import io.papermc.paper.registry.set.RegistrySet;
+import me.f0reach.holofans.lobby.ZoneTracker;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.event.ClickEvent;
-import net.kyori.adventure.text.event.HoverEvent;
-import net.kyori.adventure.text.format.TextColor;
-import net.kyori.adventure.title.Title;
-import org.bukkit.Material;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -21,33 +12,40 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
-import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
-import org.joml.Vector2i;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
+/**
+ * Owns all Othello tables and routes events and commands to the table they concern.
+ */
 public class OthelloGame implements CommandExecutor, Listener {
     private final Plugin plugin;
-    private final OthelloLogic logic = new OthelloLogic();
     private final OthelloConfig config;
-    private final Map<Player, OthelloPlayer> players = new HashMap<>();
-    private boolean firstPlaced = false;
-
-    private static final Material BLACK_DISK = Material.BLACK_CARPET;
-    private static final Material WHITE_DISK = Material.WHITE_CARPET;
-    private static final Material PLACABLE_BLOCK = Material.GREEN_CONCRETE;
-
-    public OthelloGame(Plugin plugin) {
+    private final OthelloCpu cpu;
+    private final ZoneTracker zoneTracker;
+    private final List<OthelloTable> tables = new ArrayList<>();
+    private final Map<Player, OthelloTable> playerTables = new HashMap<>();
+    // World name -> tables of that world
+    private final Map<String, WorldIndex> worldIndexes = new HashMap<>();
+    // Players almost always move within the same world, so remember the last lookup
+    private UUID cachedWorldId;
+    private WorldIndex cachedWorldIndex;
+
+    public OthelloGame(Plugin plugin, ZoneTracker zoneTracker) {
         this.plugin = plugin;
+        this.zoneTracker = zoneTracker;
         config = new OthelloConfig(plugin);
         config.load();
+        cpu = new OthelloCpu(plugin, config);
+        cpu.reloadConfig();
+        loadTables();
 
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
         plugin.getServer().getPluginCommand("othello").setExecutor(this);
@@ -56,268 +54,189 @@ public class OthelloGame implements CommandExecutor, Listener {
 
     public void reloadConfig() {
         config.load();
+        cpu.reloadConfig();
+        loadTables();
     }
 
-    private boolean hasTwoPlayers() {
-        return players.size() == 2;
+    public void shutdown() {
+        cpu.shutdown();
     }
 
-    private boolean hasNoPlayers() {
-        return players.isEmpty();
-    }
-
-    private Vector2i intoBoardPos(Vector pos) {
-        var isIncreaseX = config.getPos1().getBlockX() < config.getPos2().getBlockX();
-        var isIncreaseZ = config.getPos1().getBlockZ() < config.getPos2().getBlockZ();
-        var x = (int) Math.floor(pos.getX());
-        var y = (int) Math.floor(pos.getZ());
-        var vec = new Vector2i(Math.abs(x - config.getPos1().getBlockX()) / 2,
-                Math.abs(y - config.getPos1().getBlockZ()) / 2);
-        if (!isIncreaseX) {
-            vec = new Vector2i(7 - vec.x(), vec.y());
+    // Tables whose placement did not change keep their players and game, moved or removed tables are ended
+    private void loadTables() {
+        var previous = new HashMap<String, OthelloTable>();
+        for (var table : tables) {
+            previous.put(table.getConfig().getName(), table);
         }
-        if (!isIncreaseZ) {
-            vec = new Vector2i(vec.x(), 7 - vec.y());
+        tables.clear();
+        for (var tableConfig : config.getTables()) {
+            var table = previous.remove(tableConfig.getName());
+            if (table != null && !table.getConfig().isSamePlacement(tableConfig)) {
+                table.dispose();
+                table = null;
+            }
+            if (table == null) {
+                table = new OthelloTable(plugin, tableConfig, cpu, zoneTracker, playerTables);
+            }
+            tables.add(table);
         }
-
-        return vec;
-    }
-
-    private Vector fromBoardPos(Vector2i pos) {
-        var isIncreaseX = config.getPos1().getBlockX() < config.getPos2().getBlockX();
-        var isIncreaseZ = config.getPos1().getBlockZ() < config.getPos2().getBlockZ();
-        return new Vector(
-                config.getPos1().getBlockX() + pos.x() * 2 * (isIncreaseX ? 1 : -1),
-                config.getPos1().getBlockY(),
-                config.getPos1().getBlockZ() + pos.y() * 2 * (isIncreaseZ ? 1 : -1)
-        );
-    }
-
-    // Messages
-    private void sendGameStartChoice(Player player) {
-        player.sendMessage(
-                Component.text("オセロを開始しますか？ ")
-                        .append(Component.text("[はい]", TextColor.color(0x00FF00))
-                                .clickEvent(ClickEvent.clickEvent(ClickEvent.Action.RUN_COMMAND, "/othello start"))
-                                .hoverEvent(HoverEvent.showText(Component.text("ゲームを開始します")))
-                        )
-        );
-    }
-
-    private void sendGameEndChoice(Player player) {
-        player.sendMessage(
-                Component.text("オセロを終了しますか？ ")
-                        .append(Component.text("[はい]", TextColor.color(0xFF0000))
-                                .clickEvent(ClickEvent.clickEvent(ClickEvent.Action.RUN_COMMAND, "/othello end"))
-                                .hoverEvent(HoverEvent.showText(Component.text("ゲームを終了します")))
-                        )
-        );
-    }
-
-    private void sendGameStartMessage() {
-        if (players.size() != 1 && players.size() != 2) {
-            return;
+        // Disposed tables remove their own players from playerTables
+        for (var table : previous.values()) {
+            table.dispose();
         }
 
-        var isCPU = players.size() == 1;
-        var playerVs = players.keySet().stream().map(Player::getName).collect(Collectors.joining(" vs "));
-        var title = Title.title(
-                Component.text("オセロ", TextColor.color(0xFFFFFF)),
-                Component.text(isCPU ? playerVs + " vs CPU" : playerVs)
-        );
-        for (var player : players.keySet()) {
-            player.showTitle(title);
+        worldIndexes.clear();
+        cachedWorldId = null;
+        cachedWorldIndex = null;
+        for (var table : tables) {
+            worldIndexes.computeIfAbsent(table.getConfig().getWorld(), k -> new WorldIndex()).tables.add(table);
         }
-    }
-
-    private void sendInterruptMessage(Player player) {
-        player.sendMessage(Component.text("ゲームが中断されました"));
-    }
-
-    private void sendOpponentEndedMessage(Player player) {
-        player.sendMessage(Component.text("相手がゲームを終了しました、引き続きCPUとプレイすることもできます"));
-    }
-
-    private void sendNotYourTurnMessage(Player player) {
-        player.sendMessage(Component.text("あなたのターンではありません"));
-    }
-
-    private void sendTurnSkipMessage(Player player) {
-        if (players.containsKey(player)) {
-            var isOpponent = players.get(player) != logic.getCurrentPlayer();
-            player.sendMessage(Component.text(isOpponent ? "相手のターンをスキップしました" : "あなたのターンをスキップしました"));
+        for (var index : worldIndexes.values()) {
+            index.build();
         }
     }
 
-    private void sendInvalidPlacementMessage(Player player) {
-        var title = Title.title(
-                Component.empty(),
-                Component.text("そこにはディスクを置けません")
-        );
-        player.showTitle(title);
-    }
-
-    private void sendNotifyTurn(Player player) {
-        if (!players.containsKey(player)) return;
-        var opponent = players.keySet().stream().filter(p -> p != player).findFirst().orElse(null);
-        var opponentName = opponent != null ? opponent.getName() : "CPU";
-        var turn = logic.getCurrentPlayer() == players.get(player) ? "あなたのターン" : opponentName + "のターン";
-        var title = Title.title(
-                Component.empty(),
-                Component.text(turn)
-        );
-        player.showTitle(title);
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | ((chunkZ & 0xFFFFFFFFL) << 32);
     }
 
-    // Items
-    private ItemStack getDiskBlock(OthelloPlayer player) {
-        var diskBlock = player == OthelloPlayer.BLACK ? BLACK_DISK : WHITE_DISK;
-        var diskName = player == OthelloPlayer.BLACK ? "黒" : "白";
-        var itemStack = ItemStack.of(diskBlock, 1);
-        itemStack.editMeta(meta -> {
-            meta.displayName(Component.text(diskName + "のディスク"));
-            meta.lore(List.of(Component.text(diskName)));
-            meta.setEnchantmentGlintOverride(true);
-        });
-        final var blockPredicate = BlockPredicate.predicate()
-                .blocks(RegistrySet.keySet(RegistryKey.BLOCK, BlockTypeKeys.GREEN_CONCRETE))
-                .build();
-        final var canPlaceOn = ItemAdventurePredicate.itemAdventurePredicate().addPredicate(blockPredicate);
-        itemStack.setData(DataComponentTypes.CAN_PLACE_ON, canPlaceOn);
-        return itemStack;
+    private WorldIndex worldIndex(World world) {
+        var id = world.getUID();
+        if (!id.equals(cachedWorldId)) {
+            cachedWorldId = id;
+            cachedWorldIndex = worldIndexes.get(world.getName());
+        }
+        return cachedWorldIndex;
     }
 
-    private void giveDiskBlock(Player player) {
-        var playerDisk = players.get(player);
-        var itemStack = getDiskBlock(playerDisk);
-        player.getInventory().addItem(itemStack);
+    private OthelloTable tableAt(Location location) {
+        var index = worldIndex(location.getWorld());
+        if (index == null) return null;
+        return index.tableAt(location);
     }
 
-    private void clearDiskBlock(Player player) {
-        var removeList = new LinkedList<ItemStack>();
-        player.getInventory().forEach(stack -> {
-            var isDisk = stack != null &&
-                    (stack.getType() == BLACK_DISK ||
-                            stack.getType() == WHITE_DISK) &&
-                    stack.getItemMeta().hasEnchantmentGlintOverride();
-            if (isDisk) {
-                removeList.add(stack);
+    /**
+     * Tables of one world, looked up by chunk.
+     * A bitmap over the chunk rectangle spanned by the tables answers "no table here" without hashing.
+     * Tables spread too far apart for a small bitmap are looked up in the chunk map alone.
+     */
+    private static final class WorldIndex {
+        // Largest chunk rectangle covered by the bitmap (128 KiB)
+        private static final long MAX_BITMAP_CHUNKS = 1L << 20;
+
+        private final List<OthelloTable> tables = new ArrayList<>();
+        private final Map<Long, OthelloTable[]> chunks = new HashMap<>();
+        private int minChunkX, minChunkZ, width, height;
+        private long[] bitmap = new long[0];
+
+        private void build() {
+            minChunkX = Integer.MAX_VALUE;
+            minChunkZ = Integer.MAX_VALUE;
+            var maxChunkX = Integer.MIN_VALUE;
+            var maxChunkZ = Integer.MIN_VALUE;
+            for (var table : tables) {
+                var box = table.getConfig().getBoundingBox();
+                minChunkX = Math.min(minChunkX, (int) Math.floor(box.getMinX()) >> 4);
+                minChunkZ = Math.min(minChunkZ, (int) Math.floor(box.getMinZ()) >> 4);
+                maxChunkX = Math.max(maxChunkX, (int) Math.floor(box.getMaxX()) >> 4);
+                maxChunkZ = Math.max(maxChunkZ, (int) Math.floor(box.getMaxZ()) >> 4);
             }
-        });
-        removeList.forEach(stack -> player.getInventory().remove(stack));
-    }
-
-    // Renderer
-    private void renderBoard(World world) {
-        for (var x = 0; x < 8; x++) {
-            for (var y = 0; y < 8; y++) {
-                var disk = logic.getDisk(x, y);
-                var diskBlock = disk == OthelloDisk.BLACK ? BLACK_DISK :
-                        disk == OthelloDisk.WHITE ? WHITE_DISK : Material.AIR;
-                var blockPos = fromBoardPos(new Vector2i(x, y));
-                var block = world.getBlockAt(blockPos.toLocation(world));
-                block.setType(diskBlock);
+            var area = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+            var useBitmap = area <= MAX_BITMAP_CHUNKS;
+            if (useBitmap) {
+                width = maxChunkX - minChunkX + 1;
+                height = maxChunkZ - minChunkZ + 1;
+                bitmap = new long[(int) ((area + 63) >>> 6)];
+            } else {
+                width = 0;
+                height = 0;
+                bitmap = null;
             }
-        }
-    }
-
-    // BBox
-    private boolean isPlayerInGameArea(Player player) {
-        return player.getWorld().getName().equals(config.getWorld()) && config.getBoundingBox().contains(player.getLocation().toVector());
-    }
 
-    // Logic
-    private void nextTurn() {
-        logic.nextTurn();
-        if (logic.shouldSkipTurn()) {
-            for (var p : players.keySet()) {
-                sendTurnSkipMessage(p);
-                sendNotifyTurn(p);
+            for (var table : tables) {
+                var box = table.getConfig().getBoundingBox();
+                var minX = (int) Math.floor(box.getMinX()) >> 4;
+                var maxX = (int) Math.floor(box.getMaxX()) >> 4;
+                var minZ = (int) Math.floor(box.getMinZ()) >> 4;
+                var maxZ = (int) Math.floor(box.getMaxZ()) >> 4;
+                for (int cx = minX; cx <= maxX; cx++) {
+                    for (int cz = minZ; cz <= maxZ; cz++) {
+                        if (useBitmap) {
+                            var bit = (cz - minChunkZ) * width + (cx - minChunkX);
+                            bitmap[bit >>> 6] |= 1L << bit;
+                        }
+                        chunks.merge(chunkKey(cx, cz), new OthelloTable[]{table}, (a, b) -> {
+                            var merged = Arrays.copyOf(a, a.length + 1);
+                            merged[a.length] = table;
+                            return merged;
+                        });
+                    }
+                }
             }
-            logic.nextTurn();
         }
 
-        checkOver();
-    }
-
-    // CPU
-    private void cpuTurn() {
-        if (hasTwoPlayers()) return;
-        var shouldRunCPU = players.size() == 1 && logic.getCurrentPlayer() != players.get(players.keySet().iterator().next());
-        if (!shouldRunCPU) return;
-
-        logic.nextByCPU();
-        nextTurn();
-
-        for (var p : players.keySet()) {
-            sendNotifyTurn(p);
+        private boolean hasTable(int chunkX, int chunkZ) {
+            if (bitmap == null) return true;
+            var x = chunkX - minChunkX;
+            var z = chunkZ - minChunkZ;
+            if (x < 0 || z < 0 || x >= width || z >= height) return false;
+            var bit = z * width + x;
+            return (bitmap[bit >>> 6] & (1L << bit)) != 0;
         }
-    }
 
-    private void checkOver() {
-        if (logic.isGameOver()) {
-            var winner = logic.getWinner();
-            var message = winner == OthelloPlayer.BLACK ? "黒" : "白";
-            var winnerName = players.entrySet().stream()
-                    .filter(e -> e.getValue() == winner)
-                    .map(Map.Entry::getKey)
-                    .map(Player::getName)
-                    .findFirst()
-                    .orElse("CPU");
-            message += "(" + winnerName + ") の勝利です";
-            var title = Title.title(
-                    Component.text("ゲーム終了", TextColor.color(0xFFFFFF)),
-                    Component.text(message)
-            );
-            for (var p : players.keySet()) {
-                p.sendMessage(Component.text(message));
-                p.showTitle(title);
-                clearDiskBlock(p);
+        private OthelloTable tableAt(Location location) {
+            var chunkX = location.getBlockX() >> 4;
+            var chunkZ = location.getBlockZ() >> 4;
+            if (!hasTable(chunkX, chunkZ)) return null;
+            var candidates = chunks.get(chunkKey(chunkX, chunkZ));
+            if (candidates == null) return null;
+            var pos = location.toVector();
+            for (var table : candidates) {
+                if (table.contains(pos)) {
+                    return table;
+                }
             }
-            players.clear();
-            firstPlaced = false;
+            return null;
         }
     }
 
     // Auto exit
     private void checkExit() {
-        var world = plugin.getServer().getWorld(config.getWorld());
-        if (world == null) return;
-        int players = world.getNearbyPlayers(
-                config.getBoundingBox().getCenter().toLocation(world),
-                30
-        ).size();
-
-        if (players == 0) {
-            this.players.clear();
-            firstPlaced = false;
+        for (var table : tables) {
+            table.checkExit();
         }
     }
 
     // When player enters the game bounding box, start the game
     @EventHandler
     public void onPlayerMoveEvent(@NotNull PlayerMoveEvent event) {
-        var player = event.getPlayer();
-        if (!player.getWorld().getName().equals(config.getWorld())) {
+        // Table areas have block-aligned bounds, so nothing can change without crossing a block boundary
+        var from = event.getFrom();
+        var to = event.getTo();
+        if (from.getBlockX() == to.getBlockX()
+                && from.getBlockY() == to.getBlockY()
+                && from.getBlockZ() == to.getBlockZ()) {
             return;
         }
 
-        var isInside = config.getBoundingBox().contains(event.getTo().toVector());
-        var wasInside = config.getBoundingBox().contains(event.getFrom().toVector());
+        var player = event.getPlayer();
+        var index = worldIndex(to.getWorld());
+        if (index == null) return;
 
-        if (players.containsKey(player)) {
-            if (!isInside && wasInside) {
-                // Player left the game bounding box
-                sendGameEndChoice(player);
+        var current = playerTables.get(player);
+        if (current != null) {
+            if (current.isInWorld(to.getWorld())) {
+                current.onPlayerMove(event);
             }
             return;
         }
 
-        if (!isInside) return;
+        var table = index.tableAt(to);
+        if (table == null) return;
 
-        var canJoinGame = !hasTwoPlayers();
-        if (!wasInside && canJoinGame) {
-            sendGameStartChoice(player);
+        var wasInside = table.contains(from.toVector());
+        if (!wasInside && table.canJoin()) {
+            table.sendGameStartChoice(player);
         }
     }
 
@@ -332,48 +251,28 @@ public class OthelloGame implements CommandExecutor, Listener {
         }
 
         if (strings[0].equalsIgnoreCase("start")) {
-            if (hasTwoPlayers() || firstPlaced) {
-                player.sendMessage(Component.text("すでにゲームが進行しています"));
-                return true;
-            }
-
-            if (players.containsKey(player)) {
+            var current = playerTables.get(player);
+            if (current != null) {
                 player.sendMessage(Component.text("すでにゲームに参加しています"));
                 return true;
             }
 
-            // Check bounding box
-            if (!isPlayerInGameArea(player)) {
+            var table = tableAt(player.getLocation());
+            if (table == null) {
                 player.sendMessage(Component.text("ゲームエリア外です"));
                 return true;
             }
-
-            if (hasNoPlayers()) {
-                firstPlaced = false;
-                logic.reset();
-            }
-
-            var disk = players.size() == 1 ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
-
-            players.put(player, disk);
-            giveDiskBlock(player);
-            sendGameStartMessage();
-            renderBoard(player.getWorld());
+            table.start(player);
             return true;
         }
 
         if (strings[0].equalsIgnoreCase("end")) {
-            if (!players.containsKey(player)) {
+            var table = playerTables.get(player);
+            if (table == null) {
                 player.sendMessage(Component.text("ゲームに参加していません"));
                 return true;
             }
-
-            players.remove(player);
-            clearDiskBlock(player);
-            sendInterruptMessage(player);
-            if (!hasNoPlayers()) {
-                sendOpponentEndedMessage(players.keySet().iterator().next());
-            }
+            table.end(player);
             return true;
         }
 
@@ -383,62 +282,8 @@ public class OthelloGame implements CommandExecutor, Listener {
     // Place disk event
     @EventHandler
     public void onPlaceBlockEvent(@NotNull BlockPlaceEvent event) {
-        var player = event.getPlayer();
-        if (!players.containsKey(player)) return;
-        if (!isPlayerInGameArea(player)) return;
-
-        if (event.getBlock().getType() != WHITE_DISK && event.getBlock().getType() != BLACK_DISK) {
-            return;
-        }
-
-        event.setCancelled(true);
-
-        var playerDisk = players.get(player);
-        if (playerDisk != logic.getCurrentPlayer()) {
-            sendNotYourTurnMessage(player);
-            return;
-        }
-
-        var disk = playerDisk == OthelloPlayer.BLACK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
-        var expectedDisk = event.getBlock().getType() == BLACK_DISK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
-
-        if (disk != expectedDisk) {
-            return;
-        }
-
-        var pos = intoBoardPos(event.getBlock().getLocation().toVector());
-        if (logic.getDisk(pos.x(), pos.y()) != OthelloDisk.EMPTY) {
-            return;
-        }
-
-        var placed = logic.placeDisk(pos);
-        if (!placed) {
-            sendInvalidPlacementMessage(player);
-            renderBoard(player.getWorld());
-            return;
-        }
-
-        event.setCancelled(false);
-
-        nextTurn();
-
-        // Check if the game is over
-        if (logic.isGameOver()) {
-            return;
-        }
-
-        for (var p : players.keySet()) {
-            sendNotifyTurn(p);
-        }
-
-        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-            cpuTurn();
-            renderBoard(player.getWorld());
-        }, 20 * 2L);
-
-        plugin.getServer().getScheduler().runTask(plugin, () -> {
-            giveDiskBlock(player);
-            renderBoard(player.getWorld());
-        });
+        var table = playerTables.get(event.getPlayer());
+        if (table == null) return;
+        table.onPlaceBlock(event);
     }
 }
@@ -2,22 +2,38 @@ package me.f0reach.holofans.lobby.minigame.othello;
 
 import org.joml.Vector2i;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class OthelloLogic {
-    private final OthelloDisk[][] board = new OthelloDisk[8][8];
+    // Bitboards, square index is y * 8 + x
+    private long black;
+    private long white;
     private OthelloPlayer currentPlayer = OthelloPlayer.BLACK;
-    private static final List<Vector2i> DIRECTIONS = List.of(
-            new Vector2i(-1, -1),
-            new Vector2i(-1, 0),
-            new Vector2i(-1, 1),
-            new Vector2i(0, -1),
-            new Vector2i(0, 1),
-            new Vector2i(1, -1),
-            new Vector2i(1, 0),
-            new Vector2i(1, 1)
-    );
+    // Zobrist hash, updated incrementally
+    private long hash;
+    // Legal moves and their counts, recomputed in full from the bitboards on every change of the board
+    // (not tracked incrementally: a full recompute is a fixed handful of shifts)
+    private long blackMoves;
+    private long whiteMoves;
+    private int blackMobility;
+    private int whiteMobility;
+
+    // Position the history starts from
+    private long startBlack;
+    private long startWhite;
+    private OthelloPlayer startPlayer;
+    // One entry per placeDisk (square and flipped disks) or nextTurn (TURN) call.
+    // Entries past historyLength are the ones undone, kept for redo until a new move is made.
+    private int[] historySquares = new int[HISTORY_CAPACITY];
+    private long[] historyFlips = new long[HISTORY_CAPACITY];
+    private int historyLength;
+    private int historyEnd;
+
+    private static final int TURN = 64;
+    // 60 placements and the turn changes after them, more only with passes
+    private static final int HISTORY_CAPACITY = 128;
+    private static final byte FORMAT_INITIAL = 0;
+    private static final byte FORMAT_POSITION = 1;
 
     public OthelloLogic() {
         reset();
@@ -25,157 +41,262 @@ public class OthelloLogic {
 
     public void reset() {
         currentPlayer = OthelloPlayer.BLACK;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                board[i][j] = OthelloDisk.EMPTY;
-            }
-        }
-
-        board[3][3] = OthelloDisk.WHITE;
-        board[3][4] = OthelloDisk.BLACK;
-        board[4][3] = OthelloDisk.BLACK;
-        board[4][4] = OthelloDisk.WHITE;
+        black = OthelloBitboard.INITIAL_BLACK;
+        white = OthelloBitboard.INITIAL_WHITE;
+        hash = OthelloZobrist.hash(black, white, false);
+        updateMoves();
+        clearHistory();
     }
 
-    public OthelloDisk getDisk(int x, int y) {
-        return board[x][y];
+    /**
+     * Sets up an arbitrary position, e.g. for perft or analysis.
+     */
+    public void setPosition(long black, long white, OthelloPlayer currentPlayer) {
+        if ((black & white) != 0) {
+            throw new IllegalArgumentException("Black and white disks overlap");
+        }
+        this.black = black;
+        this.white = white;
+        this.currentPlayer = currentPlayer;
+        hash = OthelloZobrist.hash(black, white, currentPlayer == OthelloPlayer.WHITE);
+        updateMoves();
+        clearHistory();
     }
 
-    public OthelloPlayer getCurrentPlayer() {
-        return currentPlayer;
+    private void clearHistory() {
+        startBlack = black;
+        startWhite = white;
+        startPlayer = currentPlayer;
+        historyLength = 0;
+        historyEnd = 0;
     }
 
-    public void nextTurn() {
-        currentPlayer = currentPlayer == OthelloPlayer.BLACK ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
+    private void record(int square, long flipped) {
+        if (historyLength == historySquares.length) {
+            historySquares = Arrays.copyOf(historySquares, historyLength * 2);
+            historyFlips = Arrays.copyOf(historyFlips, historyLength * 2);
+        }
+        historySquares[historyLength] = square;
+        historyFlips[historyLength] = flipped;
+        historyLength++;
+        // A new move replaces whatever was undone
+        historyEnd = historyLength;
     }
 
-    private List<Vector2i> getValidDirections(Vector2i pos, OthelloDisk disk) {
-        List<Vector2i> validDirections = new ArrayList<>();
+    private void updateMoves() {
+        blackMoves = OthelloBitboard.legalMoves(black, white);
+        whiteMoves = OthelloBitboard.legalMoves(white, black);
+        blackMobility = Long.bitCount(blackMoves);
+        whiteMobility = Long.bitCount(whiteMoves);
+    }
 
-        for (var dir : DIRECTIONS) {
-            if (isValidDirection(pos, disk, dir)) {
-                validDirections.add(dir);
-            }
+    public OthelloDisk getDisk(int x, int y) {
+        // y * 8 + x would alias an out-of-range coordinate to another square
+        if (x < 0 || x >= 8 || y < 0 || y >= 8) {
+            throw new IndexOutOfBoundsException("Square out of board: " + x + ", " + y);
         }
-
-        return validDirections;
+        var bit = 1L << OthelloBitboard.square(x, y);
+        if ((black & bit) != 0) {
+            return OthelloDisk.BLACK;
+        }
+        if ((white & bit) != 0) {
+            return OthelloDisk.WHITE;
+        }
+        return OthelloDisk.EMPTY;
     }
 
-    private boolean isValidDirection(Vector2i pos, OthelloDisk disk, Vector2i dir) {
-        var next = new Vector2i(pos);
-        next.add(dir);
-        var begin = new Vector2i(next);
+    public long getBoard(OthelloPlayer player) {
+        return player == OthelloPlayer.BLACK ? black : white;
+    }
 
-        while (next.x >= 0 && next.x < 8 && next.y >= 0 && next.y < 8) {
-            if (board[next.x][next.y] == OthelloDisk.EMPTY) {
-                return false;
-            }
+    /**
+     * Squares where {@code player} can place a disk, as a bitboard (bit {@code y * 8 + x}).
+     */
+    public long getLegalMoves(OthelloPlayer player) {
+        return player == OthelloPlayer.BLACK ? blackMoves : whiteMoves;
+    }
 
-            if (board[next.x][next.y] == disk) {
-                return !begin.equals(next);
-            }
+    public int getMobility(OthelloPlayer player) {
+        return player == OthelloPlayer.BLACK ? blackMobility : whiteMobility;
+    }
 
-            next.add(dir);
+    public boolean canPlace(OthelloPlayer player, int x, int y) {
+        if (x < 0 || x >= 8 || y < 0 || y >= 8) {
+            return false;
         }
+        return (getLegalMoves(player) & (1L << OthelloBitboard.square(x, y))) != 0;
+    }
+
+    public long getHash() {
+        return hash;
+    }
 
-        return false;
+    public OthelloPlayer getCurrentPlayer() {
+        return currentPlayer;
     }
 
-    private void flipDirection(Vector2i pos, OthelloDisk disk, Vector2i dir) {
-        var next = new Vector2i(pos).add(dir);
+    public void nextTurn() {
+        switchTurn();
+        record(TURN, 0);
+    }
 
-        // Expect valid direction
-        while (board[next.x][next.y] != disk) {
-            board[next.x][next.y] = disk;
-            next.add(dir);
-        }
+    private void switchTurn() {
+        currentPlayer = currentPlayer == OthelloPlayer.BLACK ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
+        hash ^= OthelloZobrist.WHITE_TO_MOVE;
     }
 
     public boolean placeDisk(Vector2i pos) {
-        var disk = currentPlayer == OthelloPlayer.BLACK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
-        var directions = getValidDirections(pos, disk);
-
-        if (directions.isEmpty()) {
+        if (pos.x < 0 || pos.x >= 8 || pos.y < 0 || pos.y >= 8) {
             return false;
         }
+        return placeDisk(OthelloBitboard.square(pos.x, pos.y));
+    }
 
-        board[pos.x][pos.y] = disk;
-
-        for (var dir : directions) {
-            flipDirection(pos, disk, dir);
+    public boolean placeDisk(int square) {
+        // 1L << square wraps around, so PASS (-1) or 64 would test another square
+        if (square < 0 || square >= 64 || (getLegalMoves(currentPlayer) & (1L << square)) == 0) {
+            return false;
         }
 
+        var isBlack = currentPlayer == OthelloPlayer.BLACK;
+        var player = isBlack ? black : white;
+        var opponent = isBlack ? white : black;
+        var flipped = OthelloBitboard.flips(player, opponent, square);
+        toggleDisks(square, flipped);
+        record(square, flipped);
         return true;
     }
 
-    public boolean isGameOver() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board[i][j] == OthelloDisk.EMPTY) {
-                    if (!getValidDirections(new Vector2i(i, j), OthelloDisk.BLACK).isEmpty() ||
-                            !getValidDirections(new Vector2i(i, j), OthelloDisk.WHITE).isEmpty()) {
-                        return false;
-                    }
-                }
-            }
+    // Places (or takes back) a disk of the current player together with its flips; the same call undoes itself
+    private void toggleDisks(int square, long flipped) {
+        var bit = 1L << square;
+        if (currentPlayer == OthelloPlayer.BLACK) {
+            black ^= flipped | bit;
+            white ^= flipped;
+        } else {
+            white ^= flipped | bit;
+            black ^= flipped;
         }
+        // moveKey includes the side change, which happens in nextTurn()
+        hash ^= OthelloZobrist.moveKey(currentPlayer, square, flipped) ^ OthelloZobrist.WHITE_TO_MOVE;
+        updateMoves();
+    }
 
+    /**
+     * Takes back the last {@link #placeDisk} or {@link #nextTurn} call, so a move followed by its turn change needs two.
+     *
+     * @return false if there is nothing to undo
+     */
+    public boolean undo() {
+        if (historyLength == 0) {
+            return false;
+        }
+        historyLength--;
+        var square = historySquares[historyLength];
+        if (square == TURN) {
+            switchTurn();
+        } else {
+            toggleDisks(square, historyFlips[historyLength]);
+        }
         return true;
     }
 
-    public boolean shouldSkipTurn() {
-        var disk = currentPlayer == OthelloPlayer.BLACK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board[i][j] != OthelloDisk.EMPTY) {
-                    continue;
-                }
-                if (!getValidDirections(new Vector2i(i, j), disk).isEmpty()) {
-                    return false;
-                }
-            }
+    /**
+     * Plays the last undone call again, reusing the recorded flips.
+     *
+     * @return false if nothing has been undone since the last move
+     */
+    public boolean redo() {
+        if (historyLength == historyEnd) {
+            return false;
         }
-
+        var square = historySquares[historyLength];
+        if (square == TURN) {
+            switchTurn();
+        } else {
+            toggleDisks(square, historyFlips[historyLength]);
+        }
+        historyLength++;
         return true;
     }
 
-    public OthelloPlayer getWinner() {
-        int blackCount = 0;
-        int whiteCount = 0;
-
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board[i][j] == OthelloDisk.BLACK) {
-                    blackCount++;
-                } else if (board[i][j] == OthelloDisk.WHITE) {
-                    whiteCount++;
-                }
+    /**
+     * Number of {@link #placeDisk} and {@link #nextTurn} calls since {@link #reset} or {@link #setPosition}, minus the undone ones.
+     */
+    public int getHistoryLength() {
+        return historyLength;
+    }
+
+    /**
+     * Encodes the game up to the current position: a format byte, the start position if it is not the initial one
+     * (black and white bitboards, then 0 for black or 1 for white to move), and one byte per history entry
+     * (the square, or 64 for a turn change).
+     */
+    public byte[] toBytes() {
+        var initial = startBlack == OthelloBitboard.INITIAL_BLACK && startWhite == OthelloBitboard.INITIAL_WHITE
+                && startPlayer == OthelloPlayer.BLACK;
+        var header = initial ? 1 : 18;
+        var bytes = new byte[header + historyLength];
+        if (initial) {
+            bytes[0] = FORMAT_INITIAL;
+        } else {
+            bytes[0] = FORMAT_POSITION;
+            for (int i = 0; i < 8; i++) {
+                bytes[1 + i] = (byte) (startBlack >>> (56 - i * 8));
+                bytes[9 + i] = (byte) (startWhite >>> (56 - i * 8));
             }
+            bytes[17] = (byte) (startPlayer == OthelloPlayer.BLACK ? 0 : 1);
         }
-
-        return blackCount > whiteCount ? OthelloPlayer.BLACK : OthelloPlayer.WHITE;
+        for (int i = 0; i < historyLength; i++) {
+            bytes[header + i] = (byte) historySquares[i];
+        }
+        return bytes;
     }
 
-    public boolean nextByCPU() {
-        var disk = currentPlayer == OthelloPlayer.BLACK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
-        List<Vector2i> validPositions = new ArrayList<>();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board[i][j] != OthelloDisk.EMPTY) {
-                    continue;
-                }
-                var directions = getValidDirections(new Vector2i(i, j), disk);
-                if (!directions.isEmpty()) {
-                    validPositions.add(new Vector2i(i, j));
-                }
+    /**
+     * Replays a game written by {@link #toBytes()}.
+     *
+     * @throws IllegalArgumentException if the data is malformed or contains an illegal move
+     */
+    public static OthelloLogic fromBytes(byte[] bytes) {
+        if (bytes.length == 0 || (bytes[0] != FORMAT_INITIAL && bytes[0] != FORMAT_POSITION)) {
+            throw new IllegalArgumentException("Unknown othello game format");
+        }
+        var logic = new OthelloLogic();
+        var header = 1;
+        if (bytes[0] == FORMAT_POSITION) {
+            if (bytes.length < 18) {
+                throw new IllegalArgumentException("Othello game data is truncated");
             }
+            long black = 0;
+            long white = 0;
+            for (int i = 0; i < 8; i++) {
+                black = (black << 8) | (bytes[1 + i] & 0xFF);
+                white = (white << 8) | (bytes[9 + i] & 0xFF);
+            }
+            logic.setPosition(black, white, bytes[17] == 0 ? OthelloPlayer.BLACK : OthelloPlayer.WHITE);
+            header = 18;
         }
-
-        if (validPositions.isEmpty()) {
-            return true; // Skip turn
+        for (int i = header; i < bytes.length; i++) {
+            var square = bytes[i];
+            if (square == TURN) {
+                logic.nextTurn();
+            } else if (square < 0 || square > TURN || !logic.placeDisk(square)) {
+                throw new IllegalArgumentException("Illegal othello move at " + (i - header) + ": " + square);
+            }
         }
+        return logic;
+    }
 
-        var pos = validPositions.get((int) (Math.random() * validPositions.size()));
-        return placeDisk(pos);
+    public boolean isGameOver() {
+        return blackMobility == 0 && whiteMobility == 0;
+    }
+
+    public boolean shouldSkipTurn() {
+        return getMobility(currentPlayer) == 0;
+    }
+
+    public OthelloPlayer getWinner() {
+        return Long.bitCount(black) > Long.bitCount(white) ? OthelloPlayer.BLACK : OthelloPlayer.WHITE;
     }
 }
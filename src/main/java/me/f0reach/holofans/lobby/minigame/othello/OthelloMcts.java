@@ -0,0 +1,246 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Monte Carlo tree search with UCT selection and uniformly random playouts.
+ * The tree lives in primitive arrays preallocated for a fixed number of nodes; children of a node are contiguous.
+ * Positions are not stored, they are replayed from the root while descending.
+ * Searches allocate nothing, so one instance can be reused for every move.
+ * Not thread-safe, use one instance per running search. Independent instances can search the same root
+ * in parallel and have their root visits merged with {@link #addRootVisits(long[])}.
+ */
+public class OthelloMcts {
+    /** Index of the pass move in root visit arrays. */
+    public static final int PASS_INDEX = 64;
+    private static final double EXPLORATION = 1.0;
+    private static final long TIME_CHECK_INTERVAL = 256;
+    // Every move of a game plus a pass before each
+    private static final int MAX_PATH = 130;
+
+    public record Result(int move, double winRate, long iterations, int nodes, long elapsedNanos) {
+        public long iterationsPerSecond() {
+            return elapsedNanos > 0 ? iterations * 1_000_000_000L / elapsedNanos : 0;
+        }
+    }
+
+    private final int capacity;
+    // Index of the first child, -1 while the node is not expanded
+    private final int[] firstChild;
+    private final byte[] childCount;
+    // Square played to reach the node, PASS_INDEX for a pass
+    private final byte[] moves;
+    private final int[] visits;
+    // Sum of rewards for the player who made the move into the node
+    private final float[] rewards;
+    private final int[] path = new int[MAX_PATH];
+
+    private int size;
+    private long random;
+
+    public OthelloMcts(int capacity) {
+        this.capacity = capacity;
+        this.firstChild = new int[capacity];
+        this.childCount = new byte[capacity];
+        this.moves = new byte[capacity];
+        this.visits = new int[capacity];
+        this.rewards = new float[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Searches the position for {@code player} until the time budget runs out or {@code cancelled} returns true.
+     * Cancellation is polled rather than set on the instance, so a pooled instance can never be stopped
+     * by a stale request. Returns the most visited move, or {@link OthelloSearch#PASS} when there is no legal move.
+     */
+    public Result search(long player, long opponent, long timeBudgetMillis, long seed, BooleanSupplier cancelled) {
+        var start = System.nanoTime();
+        var deadline = start + timeBudgetMillis * 1_000_000L;
+        random = seed | 1;
+
+        size = 1;
+        firstChild[0] = -1;
+        childCount[0] = 0;
+        moves[0] = PASS_INDEX;
+        visits[0] = 0;
+        rewards[0] = 0;
+        expand(0, player, opponent);
+        if (childCount[0] == 0 || moves[firstChild[0]] == PASS_INDEX) {
+            return new Result(OthelloSearch.PASS, 0, 0, size, System.nanoTime() - start);
+        }
+
+        long iterations = 0;
+        while (true) {
+            if ((iterations % TIME_CHECK_INTERVAL) == 0 && (System.nanoTime() > deadline || cancelled.getAsBoolean())) {
+                break;
+            }
+            iterate(player, opponent);
+            iterations++;
+        }
+
+        var best = bestRootChild();
+        return new Result(moves[best], visits[best] > 0 ? rewards[best] / visits[best] : 0,
+                iterations, size, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds the visit count of every root move of the last search, indexed by square.
+     */
+    public void addRootVisits(long[] visitsBySquare) {
+        var first = firstChild[0];
+        for (int i = 0; i < childCount[0]; i++) {
+            visitsBySquare[moves[first + i]] += visits[first + i];
+        }
+    }
+
+    private int bestRootChild() {
+        var first = firstChild[0];
+        var best = first;
+        for (int i = 1; i < childCount[0]; i++) {
+            if (visits[first + i] > visits[best]) {
+                best = first + i;
+            }
+        }
+        return best;
+    }
+
+    private void iterate(long player, long opponent) {
+        var node = 0;
+        var length = 0;
+        path[length++] = node;
+
+        // Selection
+        while (firstChild[node] >= 0 && childCount[node] > 0) {
+            node = select(node);
+            path[length++] = node;
+            var move = moves[node];
+            if (move != PASS_INDEX) {
+                var flipped = OthelloBitboard.flips(player, opponent, move);
+                player |= flipped | (1L << move);
+                opponent &= ~flipped;
+            }
+            var tmp = player;
+            player = opponent;
+            opponent = tmp;
+        }
+
+        // Expansion on the second visit, keeps the tree from growing a layer of nodes seen only once
+        if (firstChild[node] < 0 && visits[node] > 0 && expand(node, player, opponent) && childCount[node] > 0) {
+            node = firstChild[node];
+            path[length++] = node;
+            var move = moves[node];
+            if (move != PASS_INDEX) {
+                var flipped = OthelloBitboard.flips(player, opponent, move);
+                player |= flipped | (1L << move);
+                opponent &= ~flipped;
+            }
+            var tmp = player;
+            player = opponent;
+            opponent = tmp;
+        }
+
+        // Reward for the player who moved into the leaf
+        var reward = 1.0f - playout(player, opponent);
+        for (int i = length - 1; i >= 0; i--) {
+            var n = path[i];
+            visits[n]++;
+            rewards[n] += reward;
+            reward = 1.0f - reward;
+        }
+    }
+
+    private int select(int node) {
+        var first = firstChild[node];
+        var count = childCount[node];
+        var logParent = Math.log(visits[node]);
+        var best = first;
+        var bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + count; child++) {
+            var n = visits[child];
+            if (n == 0) {
+                return child;
+            }
+            var value = rewards[child] / n + EXPLORATION * Math.sqrt(logParent / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // Returns false when the pool is full, the node then stays a leaf
+    private boolean expand(int node, long player, long opponent) {
+        var legal = OthelloBitboard.legalMoves(player, opponent);
+        var count = legal != 0 ? Long.bitCount(legal)
+                : OthelloBitboard.legalMoves(opponent, player) != 0 ? 1 : 0;
+        if (size + count > capacity) {
+            return false;
+        }
+
+        firstChild[node] = size;
+        childCount[node] = (byte) count;
+        if (legal == 0 && count == 1) {
+            init(size++, PASS_INDEX);
+        }
+        while (legal != 0) {
+            init(size++, Long.numberOfTrailingZeros(legal));
+            legal &= legal - 1;
+        }
+        return true;
+    }
+
+    private void init(int node, int move) {
+        firstChild[node] = -1;
+        childCount[node] = 0;
+        moves[node] = (byte) move;
+        visits[node] = 0;
+        rewards[node] = 0;
+    }
+
+    // Plays random moves to the end, returns 1 for a win of player, 0.5 for a draw, 0 for a loss
+    private float playout(long player, long opponent) {
+        var swapped = false;
+        var passed = false;
+        while (true) {
+            var legal = OthelloBitboard.legalMoves(player, opponent);
+            if (legal == 0) {
+                if (passed) {
+                    break;
+                }
+                passed = true;
+            } else {
+                passed = false;
+                var pick = (int) (((nextRandom() >>> 32) * Long.bitCount(legal)) >>> 32);
+                for (int i = 0; i < pick; i++) {
+                    legal &= legal - 1;
+                }
+                var move = Long.numberOfTrailingZeros(legal);
+                var flipped = OthelloBitboard.flips(player, opponent, move);
+                player |= flipped | (1L << move);
+                opponent &= ~flipped;
+            }
+            var tmp = player;
+            player = opponent;
+            opponent = tmp;
+            swapped = !swapped;
+        }
+
+        var diff = Long.bitCount(player) - Long.bitCount(opponent);
+        if (swapped) {
+            diff = -diff;
+        }
+        return diff > 0 ? 1.0f : diff < 0 ? 0.0f : 0.5f;
+    }
+
+    // xorshift64*
+    private long nextRandom() {
+        random ^= random >>> 12;
+        random ^= random << 25;
+        random ^= random >>> 27;
+        return random * 0x2545F4914F6CDD1DL;
+    }
+}
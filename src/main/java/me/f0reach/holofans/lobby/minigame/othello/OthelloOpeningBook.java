@@ -0,0 +1,104 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped opening book.
+ * <p>
+ * File layout (big endian): {@code "OTBK"}, version, entry count, then entries sorted by key as unsigned longs.
+ * Each entry is {@code key (8) | move (1) | reserved (1) | score (2)}. Keys and moves are stored for the
+ * position normalized over the 8 board symmetries, from the point of view of the side to move.
+ */
+public class OthelloOpeningBook {
+    public static final int MAGIC = 0x4F54424B; // OTBK
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int ENTRY_SIZE = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private OthelloOpeningBook(MappedByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    public static OthelloOpeningBook open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an othello book: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported othello book version: " + buffer.getInt(4));
+            }
+            var count = buffer.getInt(8);
+            if ((long) HEADER_SIZE + (long) count * ENTRY_SIZE > buffer.capacity()) {
+                throw new IOException("Truncated othello book: " + path);
+            }
+            return new OthelloOpeningBook(buffer, count);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the book move for {@code player} to move, or {@link OthelloSearch#PASS} when the position is unknown.
+     * Safe to call from any thread.
+     */
+    public int lookup(long player, long opponent) {
+        var symmetry = normalSymmetry(player, opponent);
+        var key = key(OthelloSymmetry.transform(player, symmetry), OthelloSymmetry.transform(opponent, symmetry));
+
+        var low = 0;
+        var high = count - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var offset = HEADER_SIZE + mid * ENTRY_SIZE;
+            var cmp = Long.compareUnsigned(buffer.getLong(offset), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                var move = buffer.get(offset + 8);
+                var actual = OthelloSymmetry.inverseSquare(move, symmetry);
+                // Guard against a corrupted file or a key collision
+                return OthelloBitboard.flips(player, opponent, actual) != 0 ? actual : OthelloSearch.PASS;
+            }
+        }
+        return OthelloSearch.PASS;
+    }
+
+    /**
+     * Symmetry which maps the position to its normalized form (smallest key).
+     */
+    public static int normalSymmetry(long player, long opponent) {
+        var best = 0;
+        var bestKey = key(player, opponent);
+        for (int symmetry = 1; symmetry < OthelloSymmetry.COUNT; symmetry++) {
+            var key = key(OthelloSymmetry.transform(player, symmetry), OthelloSymmetry.transform(opponent, symmetry));
+            if (Long.compareUnsigned(key, bestKey) < 0) {
+                best = symmetry;
+                bestKey = key;
+            }
+        }
+        return best;
+    }
+
+    public static long key(long player, long opponent) {
+        // 64-bit finalizer (SplitMix64) over both boards
+        var hash = player * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opponent * 0xC2B2AE3D27D4EB4FL, 31);
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,114 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Square patterns of the evaluation function.
+ * Each pattern is placed on the board once per distinct symmetric copy (an instance), all instances share its weights.
+ * A pattern configuration is indexed base 3 over its squares: 0 empty, 1 black, 2 white.
+ */
+public final class OthelloPatterns {
+    public static final int PHASES = 12;
+
+    // Base squares as {x, y}, the other instances are the symmetric copies
+    private static final int[][][] PATTERNS = {
+            // Edge with both X squares
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0}, {6, 0}, {7, 0}, {1, 1}, {6, 1}},
+            // 2x5 corner block
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}},
+            // 3x3 corner block
+            {{0, 0}, {1, 0}, {2, 0}, {0, 1}, {1, 1}, {2, 1}, {0, 2}, {1, 2}, {2, 2}},
+            // Rows 2 to 4
+            {{0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}, {5, 1}, {6, 1}, {7, 1}},
+            {{0, 2}, {1, 2}, {2, 2}, {3, 2}, {4, 2}, {5, 2}, {6, 2}, {7, 2}},
+            {{0, 3}, {1, 3}, {2, 3}, {3, 3}, {4, 3}, {5, 3}, {6, 3}, {7, 3}},
+            // Diagonals of length 8 to 4
+            {{0, 0}, {1, 1}, {2, 2}, {3, 3}, {4, 4}, {5, 5}, {6, 6}, {7, 7}},
+            {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {6, 7}},
+            {{0, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}, {5, 7}},
+            {{0, 3}, {1, 4}, {2, 5}, {3, 6}, {4, 7}},
+            {{0, 4}, {1, 5}, {2, 6}, {3, 7}},
+    };
+
+    public static final int PATTERN_COUNT = PATTERNS.length;
+    /** Offset of each pattern's weights within a phase. */
+    public static final int[] PATTERN_OFFSETS = new int[PATTERN_COUNT];
+    public static final int[] PATTERN_SIZES = new int[PATTERN_COUNT];
+    /** Offset of the side-to-move weights (black, white) within a phase. */
+    public static final int TEMPO_OFFSET;
+    /** Number of weights per phase. */
+    public static final int WEIGHT_COUNT;
+
+    public static final int INSTANCE_COUNT;
+    static final int[][] INSTANCE_SQUARES;
+    /** Offset of each instance's pattern weights within a phase. */
+    static final int[] INSTANCE_OFFSETS;
+    /** Per square: instance and power of 3 pairs of every instance containing the square. */
+    static final int[][] SQUARE_FEATURES = new int[64][];
+
+    static {
+        var offset = 0;
+        List<int[]> instances = new ArrayList<>();
+        List<Integer> instanceOffsets = new ArrayList<>();
+        for (int pattern = 0; pattern < PATTERN_COUNT; pattern++) {
+            var base = PATTERNS[pattern];
+            PATTERN_OFFSETS[pattern] = offset;
+            PATTERN_SIZES[pattern] = pow3(base.length);
+
+            var seen = new HashSet<Long>();
+            for (int symmetry = 0; symmetry < OthelloSymmetry.COUNT; symmetry++) {
+                var squares = new int[base.length];
+                var mask = 0L;
+                for (int i = 0; i < base.length; i++) {
+                    squares[i] = OthelloSymmetry.transformSquare(OthelloBitboard.square(base[i][0], base[i][1]), symmetry);
+                    mask |= 1L << squares[i];
+                }
+                if (seen.add(mask)) {
+                    instances.add(squares);
+                    instanceOffsets.add(offset);
+                }
+            }
+            offset += PATTERN_SIZES[pattern];
+        }
+        TEMPO_OFFSET = offset;
+        WEIGHT_COUNT = offset + 2;
+
+        INSTANCE_COUNT = instances.size();
+        INSTANCE_SQUARES = instances.toArray(new int[0][]);
+        INSTANCE_OFFSETS = instanceOffsets.stream().mapToInt(Integer::intValue).toArray();
+
+        for (int square = 0; square < 64; square++) {
+            List<Integer> features = new ArrayList<>();
+            for (int instance = 0; instance < INSTANCE_COUNT; instance++) {
+                var squares = INSTANCE_SQUARES[instance];
+                for (int i = 0; i < squares.length; i++) {
+                    if (squares[i] == square) {
+                        features.add(instance);
+                        features.add(pow3(i));
+                    }
+                }
+            }
+            SQUARE_FEATURES[square] = features.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private OthelloPatterns() {
+    }
+
+    private static int pow3(int n) {
+        var result = 1;
+        for (int i = 0; i < n; i++) {
+            result *= 3;
+        }
+        return result;
+    }
+
+    /**
+     * Weight set used for a position, from the number of disks on the board.
+     */
+    public static int phase(int empties) {
+        return Math.max(0, Math.min(PHASES - 1, (60 - empties) / 5));
+    }
+}
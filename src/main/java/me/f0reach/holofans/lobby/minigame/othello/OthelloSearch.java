@@ -0,0 +1,267 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+/**
+ * Negamax alpha-beta search with iterative deepening over bitboards.
+ * Leaves are scored by the pattern evaluator, or by square weights and mobility when no pattern weights are loaded.
+ * Not thread-safe, use one instance per running search. The transposition table may be shared.
+ * <p>
+ * Several instances on the same position and table form a Lazy SMP search: helpers fill the shared table
+ * and the main search (helper index 0) picks up their results. Odd helpers search one ply deeper.
+ */
+public class OthelloSearch {
+    public static final int PASS = -1;
+    private static final int INFINITY = 1_000_000;
+    private static final int WIN_SCORE = 100_000;
+    private static final int MOBILITY_WEIGHT = 8;
+    private static final long TIME_CHECK_INTERVAL = 1024;
+
+    private static final int[] SQUARE_WEIGHTS = {
+            100, -20, 10, 5, 5, 10, -20, 100,
+            -20, -50, -2, -2, -2, -2, -50, -20,
+            10, -2, -1, -1, -1, -1, -2, 10,
+            5, -2, -1, -1, -1, -1, -2, 5,
+            5, -2, -1, -1, -1, -1, -2, 5,
+            10, -2, -1, -1, -1, -1, -2, 10,
+            -20, -50, -2, -2, -2, -2, -50, -20,
+            100, -20, 10, 5, 5, 10, -20, 100
+    };
+
+    public record Result(int move, int score, int depth, long nodes, long elapsedNanos) {
+        public long nodesPerSecond() {
+            return elapsedNanos > 0 ? nodes * 1_000_000_000L / elapsedNanos : 0;
+        }
+    }
+
+    private final OthelloTranspositionTable table;
+    private final OthelloEvaluator evaluator;
+    private final int helper;
+    private volatile boolean cancelled;
+    private boolean aborted;
+    private long deadline;
+    private long nodes;
+
+    public OthelloSearch(OthelloTranspositionTable table, OthelloWeights weights) {
+        this(table, weights, 0);
+    }
+
+    public OthelloSearch(OthelloTranspositionTable table, OthelloWeights weights, int helper) {
+        this.table = table;
+        this.evaluator = weights != null ? new OthelloEvaluator(weights) : null;
+        this.helper = helper;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Finds the best move for {@code player} within the given depth and time budget.
+     * {@code hash} is the Zobrist hash of the position with {@code color} to move.
+     * Returns {@link #PASS} as the move when there is no legal move.
+     */
+    public Result search(long player, long opponent, OthelloPlayer color, long hash, int maxDepth, long timeBudgetMillis) {
+        var start = System.nanoTime();
+        deadline = start + timeBudgetMillis * 1_000_000L;
+        nodes = 0;
+        aborted = false;
+
+        var moves = OthelloBitboard.legalMoves(player, opponent);
+        if (moves == 0) {
+            return new Result(PASS, 0, 0, 0, System.nanoTime() - start);
+        }
+
+        var bestMove = Long.numberOfTrailingZeros(moves);
+        var bestScore = 0;
+        var completedDepth = 0;
+        var empties = Long.bitCount(~(player | opponent));
+        var depthLimit = Math.min(maxDepth, empties);
+        var opponentColor = opposite(color);
+        if (helper == 0) {
+            table.newSearch();
+        }
+        if (evaluator != null) {
+            evaluator.set(color == OthelloPlayer.BLACK ? player : opponent, color == OthelloPlayer.BLACK ? opponent : player);
+        }
+
+        for (int depth = 1 + helper % 2; depth <= depthLimit; depth++) {
+            var alpha = -INFINITY;
+            var iterationBest = bestMove;
+
+            // Search the previous best move first
+            var ordered = moves & ~(1L << bestMove);
+            var square = bestMove;
+            while (true) {
+                var flipped = OthelloBitboard.flips(player, opponent, square);
+                play(color, square, flipped);
+                var score = -negamax(opponent & ~flipped, player | flipped | (1L << square),
+                        opponentColor, hash ^ OthelloZobrist.moveKey(color, square, flipped),
+                        depth - 1, -INFINITY, -alpha);
+                undo(color, square, flipped);
+                if (aborted) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = square;
+                }
+
+                if (ordered == 0) {
+                    break;
+                }
+                square = Long.numberOfTrailingZeros(ordered);
+                ordered &= ordered - 1;
+            }
+
+            if (aborted) {
+                break;
+            }
+            bestMove = iterationBest;
+            bestScore = alpha;
+            completedDepth = depth;
+            table.store(hash, depth, OthelloTranspositionTable.BOUND_EXACT, bestMove, bestScore);
+
+            // Proven win or loss, deeper search will not change the result
+            if (Math.abs(bestScore) >= WIN_SCORE) {
+                break;
+            }
+        }
+
+        return new Result(bestMove, bestScore, completedDepth, nodes, System.nanoTime() - start);
+    }
+
+    private int negamax(long player, long opponent, OthelloPlayer color, long hash, int depth, int alpha, int beta) {
+        if ((++nodes % TIME_CHECK_INTERVAL) == 0 && (cancelled || System.nanoTime() > deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        var moves = OthelloBitboard.legalMoves(player, opponent);
+        if (moves == 0) {
+            if (OthelloBitboard.legalMoves(opponent, player) == 0) {
+                return finalScore(player, opponent);
+            }
+            // Pass
+            return -negamax(opponent, player, opposite(color), hash ^ OthelloZobrist.WHITE_TO_MOVE,
+                    depth, -beta, -alpha);
+        }
+
+        if (depth <= 0) {
+            return evaluate(player, opponent, color, moves);
+        }
+
+        var ttMove = OthelloTranspositionTable.NO_MOVE;
+        var entry = table.probe(hash);
+        if (entry != 0) {
+            ttMove = OthelloTranspositionTable.move(entry);
+            if (OthelloTranspositionTable.depth(entry) >= depth) {
+                var ttScore = OthelloTranspositionTable.score(entry);
+                switch (OthelloTranspositionTable.bound(entry)) {
+                    case OthelloTranspositionTable.BOUND_EXACT -> {
+                        return ttScore;
+                    }
+                    case OthelloTranspositionTable.BOUND_LOWER -> alpha = Math.max(alpha, ttScore);
+                    case OthelloTranspositionTable.BOUND_UPPER -> beta = Math.min(beta, ttScore);
+                    default -> {
+                    }
+                }
+                if (alpha >= beta) {
+                    return ttScore;
+                }
+            }
+        }
+
+        var originalAlpha = alpha;
+        var opponentColor = opposite(color);
+        var best = -INFINITY;
+        var bestMove = OthelloTranspositionTable.NO_MOVE;
+        // Try the table move first, it is only a hint and may be stale
+        var square = ttMove != OthelloTranspositionTable.NO_MOVE && (moves & (1L << ttMove)) != 0
+                ? ttMove
+                : Long.numberOfTrailingZeros(moves);
+        moves &= ~(1L << square);
+        while (true) {
+            var flipped = OthelloBitboard.flips(player, opponent, square);
+            play(color, square, flipped);
+            var score = -negamax(opponent & ~flipped, player | flipped | (1L << square),
+                    opponentColor, hash ^ OthelloZobrist.moveKey(color, square, flipped),
+                    depth - 1, -beta, -alpha);
+            undo(color, square, flipped);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = square;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+
+            if (moves == 0) {
+                break;
+            }
+            square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+        }
+
+        var bound = best <= originalAlpha ? OthelloTranspositionTable.BOUND_UPPER
+                : best >= beta ? OthelloTranspositionTable.BOUND_LOWER
+                : OthelloTranspositionTable.BOUND_EXACT;
+        table.store(hash, depth, bound, bestMove, best);
+        return best;
+    }
+
+    private void play(OthelloPlayer color, int square, long flipped) {
+        if (evaluator != null) {
+            evaluator.play(color, square, flipped);
+        }
+    }
+
+    private void undo(OthelloPlayer color, int square, long flipped) {
+        if (evaluator != null) {
+            evaluator.undo(color, square, flipped);
+        }
+    }
+
+    private static OthelloPlayer opposite(OthelloPlayer color) {
+        return color == OthelloPlayer.BLACK ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
+    }
+
+    private static int finalScore(long player, long opponent) {
+        var diff = Long.bitCount(player) - Long.bitCount(opponent);
+        if (diff > 0) {
+            return WIN_SCORE + diff;
+        }
+        if (diff < 0) {
+            return -WIN_SCORE + diff;
+        }
+        return 0;
+    }
+
+    private int evaluate(long player, long opponent, OthelloPlayer color, long playerMoves) {
+        if (evaluator != null) {
+            var score = evaluator.evaluate(color, Long.bitCount(~(player | opponent)));
+            return Math.max(-WIN_SCORE + 1, Math.min(WIN_SCORE - 1, score));
+        }
+
+        var score = 0;
+        var bits = player;
+        while (bits != 0) {
+            score += SQUARE_WEIGHTS[Long.numberOfTrailingZeros(bits)];
+            bits &= bits - 1;
+        }
+        bits = opponent;
+        while (bits != 0) {
+            score -= SQUARE_WEIGHTS[Long.numberOfTrailingZeros(bits)];
+            bits &= bits - 1;
+        }
+
+        var mobility = Long.bitCount(playerMoves) - Long.bitCount(OthelloBitboard.legalMoves(opponent, player));
+        return score + mobility * MOBILITY_WEIGHT;
+    }
+}
@@ -0,0 +1,72 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+/**
+ * The 8 symmetries of the board (rotations and reflections) applied to bitboards and squares.
+ */
+public final class OthelloSymmetry {
+    public static final int COUNT = 8;
+
+    private static final int[][] SQUARES = new int[COUNT][64];
+    private static final int[][] INVERSE_SQUARES = new int[COUNT][64];
+
+    static {
+        for (int symmetry = 0; symmetry < COUNT; symmetry++) {
+            for (int square = 0; square < 64; square++) {
+                var mapped = Long.numberOfTrailingZeros(transform(1L << square, symmetry));
+                SQUARES[symmetry][square] = mapped;
+                INVERSE_SQUARES[symmetry][mapped] = square;
+            }
+        }
+    }
+
+    private OthelloSymmetry() {
+    }
+
+    /**
+     * Applies symmetry {@code symmetry} (0 is identity): bit 0 flips rows, bit 1 mirrors columns,
+     * bit 2 transposes, in that order.
+     */
+    public static long transform(long bits, int symmetry) {
+        if ((symmetry & 1) != 0) {
+            bits = flipVertical(bits);
+        }
+        if ((symmetry & 2) != 0) {
+            bits = mirrorHorizontal(bits);
+        }
+        if ((symmetry & 4) != 0) {
+            bits = transpose(bits);
+        }
+        return bits;
+    }
+
+    public static int transformSquare(int square, int symmetry) {
+        return SQUARES[symmetry][square];
+    }
+
+    public static int inverseSquare(int square, int symmetry) {
+        return INVERSE_SQUARES[symmetry][square];
+    }
+
+    private static long flipVertical(long bits) {
+        return Long.reverseBytes(bits);
+    }
+
+    private static long mirrorHorizontal(long bits) {
+        bits = ((bits >>> 1) & 0x5555555555555555L) | ((bits & 0x5555555555555555L) << 1);
+        bits = ((bits >>> 2) & 0x3333333333333333L) | ((bits & 0x3333333333333333L) << 2);
+        bits = ((bits >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((bits & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return bits;
+    }
+
+    // Swaps x and y
+    private static long transpose(long bits) {
+        long t;
+        t = 0x0F0F0F0F00000000L & (bits ^ (bits << 28));
+        bits ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (bits ^ (bits << 14));
+        bits ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (bits ^ (bits << 7));
+        bits ^= t ^ (t >>> 7);
+        return bits;
+    }
+}
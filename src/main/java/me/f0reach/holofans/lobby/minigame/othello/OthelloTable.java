@@ -0,0 +1,462 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import io.papermc.paper.block.BlockPredicate;
+import io.papermc.paper.datacomponent.DataComponentTypes;
+import io.papermc.paper.datacomponent.item.ItemAdventurePredicate;
+import io.papermc.paper.registry.RegistryKey;
+import io.papermc.paper.registry.keys.BlockTypeKeys;
+import io.papermc.paper.registry.set.RegistrySet;
+import me.f0reach.holofans.lobby.ZoneTracker;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.title.Title;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+import org.joml.Vector2i;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * One Othello board with its own game state and players.
+ */
+public class OthelloTable {
+    private final Plugin plugin;
+    private final OthelloTableConfig config;
+    private final OthelloCpu cpu;
+    private final OthelloLogic logic = new OthelloLogic();
+    private final OthelloBoardRenderer renderer;
+    private final ZoneTracker zoneTracker;
+    // Players around the table, an empty area ends the game
+    private final ZoneTracker.Zone nearby;
+    private final Map<Player, OthelloPlayer> players = new HashMap<>();
+    // Shared with OthelloGame to route players to their table
+    private final Map<Player, OthelloTable> playerTables;
+    private OthelloCpu.Request cpuRequest;
+    private boolean firstPlaced = false;
+    // Resolved on first use, the world may load after the plugin
+    private UUID worldId;
+
+    private static final Material BLACK_DISK = OthelloBoardRenderer.BLACK_DISK;
+    private static final Material WHITE_DISK = OthelloBoardRenderer.WHITE_DISK;
+
+    public OthelloTable(Plugin plugin, OthelloTableConfig config, OthelloCpu cpu, ZoneTracker zoneTracker,
+                        Map<Player, OthelloTable> playerTables) {
+        this.plugin = plugin;
+        this.config = config;
+        this.cpu = cpu;
+        this.zoneTracker = zoneTracker;
+        this.playerTables = playerTables;
+        this.renderer = new OthelloBoardRenderer(plugin, config, logic);
+        this.nearby = zoneTracker.register(config.getWorld(),
+                BoundingBox.of(config.getBoundingBox().getCenter(), 30, 30, 30));
+    }
+
+    public OthelloTableConfig getConfig() {
+        return config;
+    }
+
+    private boolean hasTwoPlayers() {
+        return players.size() == 2;
+    }
+
+    private boolean hasNoPlayers() {
+        return players.isEmpty();
+    }
+
+    private void addPlayer(Player player, OthelloPlayer disk) {
+        players.put(player, disk);
+        playerTables.put(player, this);
+    }
+
+    private void removePlayer(Player player) {
+        players.remove(player);
+        playerTables.remove(player, this);
+    }
+
+    private void clearPlayers() {
+        for (var player : players.keySet()) {
+            playerTables.remove(player, this);
+        }
+        players.clear();
+        firstPlaced = false;
+        cancelCpu();
+    }
+
+    private Vector2i intoBoardPos(Vector pos) {
+        var isIncreaseX = config.getPos1().getBlockX() < config.getPos2().getBlockX();
+        var isIncreaseZ = config.getPos1().getBlockZ() < config.getPos2().getBlockZ();
+        var x = (int) Math.floor(pos.getX());
+        var y = (int) Math.floor(pos.getZ());
+        var vec = new Vector2i(Math.abs(x - config.getPos1().getBlockX()) / 2,
+                Math.abs(y - config.getPos1().getBlockZ()) / 2);
+        if (!isIncreaseX) {
+            vec = new Vector2i(7 - vec.x(), vec.y());
+        }
+        if (!isIncreaseZ) {
+            vec = new Vector2i(vec.x(), 7 - vec.y());
+        }
+
+        return vec;
+    }
+
+    // Messages
+    public void sendGameStartChoice(Player player) {
+        player.sendMessage(
+                Component.text("オセロを開始しますか？ ")
+                        .append(Component.text("[はい]", TextColor.color(0x00FF00))
+                                .clickEvent(ClickEvent.clickEvent(ClickEvent.Action.RUN_COMMAND, "/othello start"))
+                                .hoverEvent(HoverEvent.showText(Component.text("ゲームを開始します")))
+                        )
+        );
+    }
+
+    private void sendGameEndChoice(Player player) {
+        player.sendMessage(
+                Component.text("オセロを終了しますか？ ")
+                        .append(Component.text("[はい]", TextColor.color(0xFF0000))
+                                .clickEvent(ClickEvent.clickEvent(ClickEvent.Action.RUN_COMMAND, "/othello end"))
+                                .hoverEvent(HoverEvent.showText(Component.text("ゲームを終了します")))
+                        )
+        );
+    }
+
+    private void sendGameStartMessage() {
+        if (players.size() != 1 && players.size() != 2) {
+            return;
+        }
+
+        var isCPU = players.size() == 1;
+        var playerVs = players.keySet().stream().map(Player::getName).collect(Collectors.joining(" vs "));
+        var title = Title.title(
+                Component.text("オセロ", TextColor.color(0xFFFFFF)),
+                Component.text(isCPU ? playerVs + " vs CPU" : playerVs)
+        );
+        for (var player : players.keySet()) {
+            player.showTitle(title);
+        }
+    }
+
+    private void sendInterruptMessage(Player player) {
+        player.sendMessage(Component.text("ゲームが中断されました"));
+    }
+
+    private void sendOpponentEndedMessage(Player player) {
+        player.sendMessage(Component.text("相手がゲームを終了しました、引き続きCPUとプレイすることもできます"));
+    }
+
+    private void sendNotYourTurnMessage(Player player) {
+        player.sendMessage(Component.text("あなたのターンではありません"));
+    }
+
+    private void sendTurnSkipMessage(Player player) {
+        if (players.containsKey(player)) {
+            var isOpponent = players.get(player) != logic.getCurrentPlayer();
+            player.sendMessage(Component.text(isOpponent ? "相手のターンをスキップしました" : "あなたのターンをスキップしました"));
+        }
+    }
+
+    private void sendInvalidPlacementMessage(Player player) {
+        var title = Title.title(
+                Component.empty(),
+                Component.text("そこにはディスクを置けません")
+        );
+        player.showTitle(title);
+    }
+
+    private void sendNotifyTurn(Player player) {
+        if (!players.containsKey(player)) return;
+        var opponent = players.keySet().stream().filter(p -> p != player).findFirst().orElse(null);
+        var opponentName = opponent != null ? opponent.getName() : "CPU";
+        var turn = logic.getCurrentPlayer() == players.get(player) ? "あなたのターン" : opponentName + "のターン";
+        var title = Title.title(
+                Component.empty(),
+                Component.text(turn)
+        );
+        player.showTitle(title);
+    }
+
+    // Items
+    private ItemStack getDiskBlock(OthelloPlayer player) {
+        var diskBlock = player == OthelloPlayer.BLACK ? BLACK_DISK : WHITE_DISK;
+        var diskName = player == OthelloPlayer.BLACK ? "黒" : "白";
+        var itemStack = ItemStack.of(diskBlock, 1);
+        itemStack.editMeta(meta -> {
+            meta.displayName(Component.text(diskName + "のディスク"));
+            meta.lore(List.of(Component.text(diskName)));
+            meta.setEnchantmentGlintOverride(true);
+        });
+        final var blockPredicate = BlockPredicate.predicate()
+                .blocks(RegistrySet.keySet(RegistryKey.BLOCK, BlockTypeKeys.GREEN_CONCRETE))
+                .build();
+        final var canPlaceOn = ItemAdventurePredicate.itemAdventurePredicate().addPredicate(blockPredicate);
+        itemStack.setData(DataComponentTypes.CAN_PLACE_ON, canPlaceOn);
+        return itemStack;
+    }
+
+    private void giveDiskBlock(Player player) {
+        var playerDisk = players.get(player);
+        if (playerDisk == null) return;
+        var itemStack = getDiskBlock(playerDisk);
+        player.getInventory().addItem(itemStack);
+    }
+
+    private void clearDiskBlock(Player player) {
+        var removeList = new LinkedList<ItemStack>();
+        player.getInventory().forEach(stack -> {
+            var isDisk = stack != null &&
+                    (stack.getType() == BLACK_DISK ||
+                            stack.getType() == WHITE_DISK) &&
+                    stack.getItemMeta().hasEnchantmentGlintOverride();
+            if (isDisk) {
+                removeList.add(stack);
+            }
+        });
+        removeList.forEach(stack -> player.getInventory().remove(stack));
+    }
+
+    // BBox
+    public boolean contains(Vector pos) {
+        return config.getBoundingBox().contains(pos);
+    }
+
+    public boolean isInWorld(World world) {
+        if (worldId == null) {
+            var configured = plugin.getServer().getWorld(config.getWorld());
+            if (configured == null) return false;
+            worldId = configured.getUID();
+        }
+        return worldId.equals(world.getUID());
+    }
+
+    private boolean isPlayerInGameArea(Player player) {
+        return isInWorld(player.getWorld()) && contains(player.getLocation().toVector());
+    }
+
+    // Logic
+    private void nextTurn() {
+        logic.nextTurn();
+        if (logic.shouldSkipTurn()) {
+            for (var p : players.keySet()) {
+                sendTurnSkipMessage(p);
+                sendNotifyTurn(p);
+            }
+            logic.nextTurn();
+        }
+
+        checkOver();
+    }
+
+    // CPU
+    private boolean isCpuTurn() {
+        return players.size() == 1 && logic.getCurrentPlayer() != players.values().iterator().next();
+    }
+
+    private void cancelCpu() {
+        if (cpuRequest != null) {
+            cpuRequest.cancel();
+            cpuRequest = null;
+        }
+    }
+
+    private void cpuTurn(World world) {
+        if (!isCpuTurn() || (cpuRequest != null && cpuRequest.isActive())) return;
+
+        cpuRequest = cpu.requestMove(logic, move -> {
+            cpuRequest = null;
+            if (!isCpuTurn()) return;
+
+            if (move != OthelloSearch.PASS) {
+                logic.placeDisk(move);
+            }
+            nextTurn();
+            renderer.requestRender(world);
+
+            for (var p : players.keySet()) {
+                sendNotifyTurn(p);
+            }
+
+            // The player may have had to pass
+            cpuTurn(world);
+        });
+    }
+
+    private void checkOver() {
+        if (logic.isGameOver()) {
+            var winner = logic.getWinner();
+            var message = winner == OthelloPlayer.BLACK ? "黒" : "白";
+            var winnerName = players.entrySet().stream()
+                    .filter(e -> e.getValue() == winner)
+                    .map(Map.Entry::getKey)
+                    .map(Player::getName)
+                    .findFirst()
+                    .orElse("CPU");
+            message += "(" + winnerName + ") の勝利です";
+            var title = Title.title(
+                    Component.text("ゲーム終了", TextColor.color(0xFFFFFF)),
+                    Component.text(message)
+            );
+            for (var p : players.keySet()) {
+                p.sendMessage(Component.text(message));
+                p.showTitle(title);
+                clearDiskBlock(p);
+            }
+            clearPlayers();
+        }
+    }
+
+    // Auto exit
+    public void checkExit() {
+        if (nearby.isEmpty()) {
+            clearPlayers();
+        }
+    }
+
+    /**
+     * Ends the game without a result, e.g. when the table is removed on reload.
+     */
+    public void dispose() {
+        for (var player : players.keySet()) {
+            clearDiskBlock(player);
+            sendInterruptMessage(player);
+        }
+        clearPlayers();
+        zoneTracker.unregister(nearby);
+    }
+
+    // Called for players of this table only
+    public void onPlayerMove(PlayerMoveEvent event) {
+        var isInside = contains(event.getTo().toVector());
+        var wasInside = contains(event.getFrom().toVector());
+        if (!isInside && wasInside) {
+            // Player left the game bounding box
+            sendGameEndChoice(event.getPlayer());
+        }
+    }
+
+    public boolean canJoin() {
+        return !hasTwoPlayers();
+    }
+
+    public void start(Player player) {
+        if (hasTwoPlayers() || firstPlaced) {
+            player.sendMessage(Component.text("すでにゲームが進行しています"));
+            return;
+        }
+
+        if (players.containsKey(player)) {
+            player.sendMessage(Component.text("すでにゲームに参加しています"));
+            return;
+        }
+
+        // Check bounding box
+        if (!isPlayerInGameArea(player)) {
+            player.sendMessage(Component.text("ゲームエリア外です"));
+            return;
+        }
+
+        // A joining player takes over from the CPU
+        cancelCpu();
+        if (hasNoPlayers()) {
+            firstPlaced = false;
+            logic.reset();
+        }
+
+        var disk = players.size() == 1 ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
+
+        addPlayer(player, disk);
+        giveDiskBlock(player);
+        sendGameStartMessage();
+        // Repair anything changed while no game was running
+        renderer.invalidate();
+        renderer.requestRender(player.getWorld());
+    }
+
+    public void end(Player player) {
+        if (!players.containsKey(player)) {
+            player.sendMessage(Component.text("ゲームに参加していません"));
+            return;
+        }
+
+        removePlayer(player);
+        clearDiskBlock(player);
+        sendInterruptMessage(player);
+        if (!hasNoPlayers()) {
+            sendOpponentEndedMessage(players.keySet().iterator().next());
+            cpuTurn(player.getWorld());
+        } else {
+            cancelCpu();
+        }
+    }
+
+    // Called for players of this table only
+    public void onPlaceBlock(BlockPlaceEvent event) {
+        var player = event.getPlayer();
+        if (!isPlayerInGameArea(player)) return;
+
+        if (event.getBlock().getType() != WHITE_DISK && event.getBlock().getType() != BLACK_DISK) {
+            return;
+        }
+
+        event.setCancelled(true);
+
+        var playerDisk = players.get(player);
+        if (playerDisk != logic.getCurrentPlayer()) {
+            sendNotYourTurnMessage(player);
+            return;
+        }
+
+        var disk = playerDisk == OthelloPlayer.BLACK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
+        var expectedDisk = event.getBlock().getType() == BLACK_DISK ? OthelloDisk.BLACK : OthelloDisk.WHITE;
+
+        if (disk != expectedDisk) {
+            return;
+        }
+
+        var pos = intoBoardPos(event.getBlock().getLocation().toVector());
+        // Blocks on the table's border map just outside the board
+        if (pos.x() < 0 || pos.x() >= 8 || pos.y() < 0 || pos.y() >= 8) {
+            return;
+        }
+        if (logic.getDisk(pos.x(), pos.y()) != OthelloDisk.EMPTY) {
+            return;
+        }
+
+        var placed = logic.placeDisk(pos);
+        if (!placed) {
+            sendInvalidPlacementMessage(player);
+            return;
+        }
+
+        event.setCancelled(false);
+        renderer.requestRender(player.getWorld());
+
+        nextTurn();
+
+        // Check if the game is over
+        if (logic.isGameOver()) {
+            return;
+        }
+
+        for (var p : players.keySet()) {
+            sendNotifyTurn(p);
+        }
+
+        cpuTurn(player.getWorld());
+
+        plugin.getServer().getScheduler().runTask(plugin, () -> giveDiskBlock(player));
+    }
+}
@@ -0,0 +1,63 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.Vector;
+
+public class OthelloTableConfig {
+    private final String name;
+    private final String world;
+    private final Vector pos1, pos2;
+    private final BoundingBox boundingBox;
+
+    private OthelloTableConfig(String name, String world, Vector pos1, Vector pos2) {
+        this.name = name;
+        this.world = world;
+        this.pos1 = pos1;
+        this.pos2 = pos2;
+        this.boundingBox = BoundingBox.of(pos1, pos2).expand(5.0);
+    }
+
+    /**
+     * Reads one table, returns null (with a warning) when the section is incomplete.
+     */
+    public static OthelloTableConfig load(Plugin plugin, String name, ConfigurationSection section) {
+        var world = section.getString("world");
+        var pos1 = section.getVector("pos1");
+        var pos2 = section.getVector("pos2");
+        if (world == null || pos1 == null || pos2 == null) {
+            plugin.getLogger().warning("Othello table " + name + " needs world, pos1 and pos2");
+            return null;
+        }
+        return new OthelloTableConfig(name, world, pos1, pos2);
+    }
+
+    /**
+     * Whether the other config describes the same board, so a running game can be kept across reloads.
+     */
+    public boolean isSamePlacement(OthelloTableConfig other) {
+        return name.equals(other.name) && world.equals(other.world)
+                && pos1.equals(other.pos1) && pos2.equals(other.pos2);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    public Vector getPos1() {
+        return pos1;
+    }
+
+    public Vector getPos2() {
+        return pos2;
+    }
+}
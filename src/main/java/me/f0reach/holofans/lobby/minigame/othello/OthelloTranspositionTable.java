@@ -0,0 +1,124 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table backed by a {@code long[]}.
+ * <p>
+ * Each entry is two longs: {@code key ^ data} and {@code data}. A torn write from a concurrent
+ * search fails the key check instead of returning corrupted data, so no locking is needed.
+ * Entries are grouped in buckets of two; stale generations are replaced first, then shallower entries.
+ */
+public class OthelloTranspositionTable {
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+    public static final int NO_MOVE = 64;
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_ENTRIES = 2;
+    private static final int BUCKET_LONGS = ENTRY_LONGS * BUCKET_ENTRIES;
+
+    // data layout: score (32) | move (7) | depth (8) | bound (2) | age (8)
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 39;
+    private static final int BOUND_SHIFT = 47;
+    private static final int AGE_SHIFT = 49;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age = 0;
+
+    public OthelloTranspositionTable(int sizeMegabytes) {
+        var bytes = Math.max(1L, sizeMegabytes) * 1024 * 1024;
+        var buckets = Long.highestOneBit(bytes / (BUCKET_LONGS * Long.BYTES));
+        // Keep the array index within int range
+        buckets = Math.min(buckets, 1L << 28);
+        this.table = new long[(int) buckets * BUCKET_LONGS];
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Starts a new search generation, entries from older generations become replaceable.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Returns the packed entry data for {@code hash}, or 0 when missing.
+     */
+    public long probe(long hash) {
+        var base = bucketIndex(hash);
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            var index = base + i * ENTRY_LONGS;
+            var data = table[index + 1];
+            if (data != 0 && (table[index] ^ data) == hash) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    public void store(long hash, int depth, int bound, int move, int score) {
+        var data = ((long) score & 0xFFFFFFFFL)
+                | ((long) (move & 0x7F) << MOVE_SHIFT)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+
+        var base = bucketIndex(hash);
+        var replace = base;
+        var replacePriority = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            var index = base + i * ENTRY_LONGS;
+            var existing = table[index + 1];
+            if (existing == 0 || (table[index] ^ existing) == hash) {
+                // Keep a deeper result of the same position unless it is from an old search
+                if (existing != 0 && depth(existing) > depth && entryAge(existing) == age && bound != BOUND_EXACT) {
+                    return;
+                }
+                replace = index;
+                break;
+            }
+
+            // Older generations first, then shallower entries
+            var priority = depth(existing) - ((age - entryAge(existing)) & 0xFF) * 256;
+            if (priority < replacePriority) {
+                replacePriority = priority;
+                replace = index;
+            }
+        }
+
+        table[replace] = hash ^ data;
+        table[replace + 1] = data;
+    }
+
+    private int bucketIndex(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_LONGS;
+    }
+
+    public static int score(long data) {
+        return (int) data;
+    }
+
+    public static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT) & 0x7F;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int entryAge(long data) {
+        return (int) (data >>> AGE_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,86 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pattern weights of the evaluation function, one {@code short[]} per game phase.
+ * Weights are in 1/{@link #SCALE} disks from black's point of view.
+ * <p>
+ * File format (gzip, big endian): magic, version, phase count, weights per phase, then the weights.
+ */
+public final class OthelloWeights {
+    public static final String RESOURCE = "othello-weights.bin.gz";
+    public static final int SCALE = 64;
+    static final int MAGIC = 0x4F544556; // "OTEV"
+    static final int VERSION = 1;
+
+    private final short[][] weights;
+
+    OthelloWeights(short[][] weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Loads the weights bundled in the plugin jar, or returns null when they are missing.
+     */
+    public static OthelloWeights loadDefault() throws IOException {
+        try (var in = OthelloWeights.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                return null;
+            }
+            return read(in);
+        }
+    }
+
+    public static OthelloWeights read(InputStream stream) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an othello weights file");
+        }
+        var version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported othello weights version: " + version);
+        }
+        var phases = in.readInt();
+        var count = in.readInt();
+        if (phases != OthelloPatterns.PHASES || count != OthelloPatterns.WEIGHT_COUNT) {
+            throw new IOException("Othello weights do not match the pattern set");
+        }
+
+        var weights = new short[phases][count];
+        for (var phase : weights) {
+            for (int i = 0; i < count; i++) {
+                phase[i] = in.readShort();
+            }
+        }
+        return new OthelloWeights(weights);
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        var gzip = new GZIPOutputStream(stream);
+        var out = new DataOutputStream(new BufferedOutputStream(gzip));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(OthelloPatterns.PHASES);
+        out.writeInt(OthelloPatterns.WEIGHT_COUNT);
+        for (var phase : weights) {
+            for (var weight : phase) {
+                out.writeShort(weight);
+            }
+        }
+        out.flush();
+        gzip.finish();
+    }
+
+    short[] phase(int phase) {
+        return weights[phase];
+    }
+}
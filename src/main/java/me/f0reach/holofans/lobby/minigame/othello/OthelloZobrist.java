@@ -0,0 +1,54 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for Othello positions.
+ * The hash of a position is the xor of the key of every disk, plus {@link #WHITE_TO_MOVE} on white's turn.
+ */
+public final class OthelloZobrist {
+    public static final long WHITE_TO_MOVE;
+    private static final long[][] DISK_KEYS = new long[2][64];
+    // BLACK ^ WHITE key per square, toggled when a disk is flipped
+    private static final long[] FLIP_KEYS = new long[64];
+
+    static {
+        // Fixed seed so that hashes are stable between runs
+        var random = new SplittableRandom(0x0E11_0B0A_2DL);
+        for (int square = 0; square < 64; square++) {
+            DISK_KEYS[0][square] = random.nextLong();
+            DISK_KEYS[1][square] = random.nextLong();
+            FLIP_KEYS[square] = DISK_KEYS[0][square] ^ DISK_KEYS[1][square];
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    private OthelloZobrist() {
+    }
+
+    public static long hash(long black, long white, boolean whiteToMove) {
+        var hash = whiteToMove ? WHITE_TO_MOVE : 0L;
+        while (black != 0) {
+            hash ^= DISK_KEYS[0][Long.numberOfTrailingZeros(black)];
+            black &= black - 1;
+        }
+        while (white != 0) {
+            hash ^= DISK_KEYS[1][Long.numberOfTrailingZeros(white)];
+            white &= white - 1;
+        }
+        return hash;
+    }
+
+    /**
+     * Hash delta for {@code color} placing at {@code square} and flipping {@code flipped},
+     * including the change of side to move.
+     */
+    public static long moveKey(OthelloPlayer color, int square, long flipped) {
+        var key = DISK_KEYS[color.ordinal()][square] ^ WHITE_TO_MOVE;
+        while (flipped != 0) {
+            key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flipped)];
+            flipped &= flipped - 1;
+        }
+        return key;
+    }
+}
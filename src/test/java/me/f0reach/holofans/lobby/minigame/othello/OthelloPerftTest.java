@@ -0,0 +1,141 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Move generator check: counts the leaves of the move tree of {@link OthelloLogic} to a fixed depth and compares
+ * them with reference counts. A pass counts as a move; a finished game is a leaf wherever it occurs.
+ * Every move is taken back with {@link OthelloLogic#undo()}, so the history is checked along the way.
+ * <p>
+ * The shallow levels run with {@code ./gradlew test}. The deep ones take seconds each and are tagged {@code deep};
+ * run them with {@code ./gradlew perftOthello}.
+ */
+class OthelloPerftTest {
+    /**
+     * Rows from top (y = 0) to bottom, X black, O white, - empty. {@code counts[i]} is the leaf count at depth i + 1;
+     * depths up to {@code shallowDepth} run in the regular test task.
+     */
+    private record Position(String name, String board, OthelloPlayer toMove, int shallowDepth, long[] counts) {
+    }
+
+    private static final Position[] POSITIONS = {
+            new Position("start",
+                    "-------- -------- -------- ---OX--- ---XO--- -------- -------- --------",
+                    OthelloPlayer.BLACK, 8,
+                    new long[]{4, 12, 56, 244, 1396, 8200, 55092, 390216, 3005288, 24571284}),
+            // Passes from depth 6
+            new Position("midgame",
+                    "----XXXX ----XXX- ----OXX- ---OXOOO ---XO-O- -OOOO--O ----O--- --------",
+                    OthelloPlayer.BLACK, 6,
+                    new long[]{11, 71, 801, 5545, 64705, 502852, 5966265, 50843892}),
+            // Passes and finished games, every game is over by depth 12
+            new Position("endgame",
+                    "OOOXO--- X-XXO--- XXOOOOOO XXXXOOOX XXXOXOX- XOOXXOOO XOOOOOOX XXXXXXXX",
+                    OthelloPlayer.BLACK, 12,
+                    new long[]{6, 23, 107, 383, 1302, 3045, 5603, 5684, 5697, 5697, 5697, 5697}),
+    };
+
+    static Stream<Arguments> shallow() {
+        return levels(false);
+    }
+
+    static Stream<Arguments> deep() {
+        return levels(true);
+    }
+
+    private static Stream<Arguments> levels(boolean deep) {
+        return Arrays.stream(POSITIONS).flatMap(position -> {
+            var from = deep ? position.shallowDepth() + 1 : 1;
+            var to = deep ? position.counts().length : position.shallowDepth();
+            return IntStream.rangeClosed(from, to)
+                    .mapToObj(depth -> Arguments.of(position.name(), depth));
+        });
+    }
+
+    @ParameterizedTest(name = "{0} depth {1}")
+    @MethodSource("shallow")
+    void shallowPerft(String name, int depth) {
+        check(name, depth);
+    }
+
+    @Tag("deep")
+    @ParameterizedTest(name = "{0} depth {1}")
+    @MethodSource("deep")
+    void deepPerft(String name, int depth) {
+        check(name, depth);
+    }
+
+    private static void check(String name, int depth) {
+        var position = Arrays.stream(POSITIONS).filter(p -> p.name().equals(name)).findFirst().orElseThrow();
+        var logic = parse(position.board(), position.toMove());
+        var start = System.nanoTime();
+        var nodes = perft(logic, depth);
+        var elapsed = System.nanoTime() - start;
+        assertEquals(position.counts()[depth - 1], nodes, name + " depth " + depth);
+        // The undo calls must have restored the position
+        assertEquals(0, logic.getHistoryLength(), "history after perft");
+        System.out.printf("%s depth %2d: %,14d  %8.1f ms  %6.2f M leaves/s%n", name, depth, nodes,
+                elapsed / 1e6, elapsed > 0 ? nodes * 1e3 / elapsed : 0.0);
+    }
+
+    static long perft(OthelloLogic logic, int depth) {
+        if (depth == 0 || logic.isGameOver()) {
+            return 1;
+        }
+
+        var color = logic.getCurrentPlayer();
+        if (logic.shouldSkipTurn()) {
+            logic.nextTurn();
+            var nodes = perft(logic, depth - 1);
+            logic.undo();
+            return nodes;
+        }
+
+        var moves = logic.getLegalMoves(color);
+        if (depth == 1) {
+            return Long.bitCount(moves);
+        }
+
+        var nodes = 0L;
+        while (moves != 0) {
+            var square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            logic.placeDisk(square);
+            logic.nextTurn();
+            nodes += perft(logic, depth - 1);
+            logic.undo();
+            logic.undo();
+        }
+        return nodes;
+    }
+
+    static OthelloLogic parse(String board, OthelloPlayer toMove) {
+        var cells = board.replace(" ", "");
+        if (cells.length() != 64) {
+            throw new IllegalArgumentException("Board needs 64 squares: " + board);
+        }
+        var black = 0L;
+        var white = 0L;
+        for (int square = 0; square < 64; square++) {
+            switch (cells.charAt(square)) {
+                case 'X' -> black |= 1L << square;
+                case 'O' -> white |= 1L << square;
+                case '-' -> {
+                }
+                default -> throw new IllegalArgumentException("Unknown square: " + cells.charAt(square));
+            }
+        }
+        var logic = new OthelloLogic();
+        logic.setPosition(black, white, toMove);
+        return logic;
+    }
+}
@@ -0,0 +1,132 @@
+package me.f0reach.holofans.lobby.minigame.gomoku;
+
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * AlphaBetaCpu と SimpleCpu を同じ1手あたりの持ち時間で対局させるツール ({@code matchGomokuCpu} タスクから実行する)
+ * 序盤の3手をランダムに置いた局面から、先手と後手を入れ替えて2局ずつ打つ
+ * 盤面の大きさごとに勝敗と、実際に使った1手あたりの時間を表示する
+ * <p>
+ * 引数: 1つの大きさあたりの対局数, 1手あたりの持ち時間 (ミリ秒), 乱数のシード, 盤面の大きさ (カンマ区切り)
+ */
+public final class GomokuCpuMatch {
+    // 序盤にランダムに置く石の数と、中央からの範囲
+    private static final int OPENING_STONES = 3;
+    private static final int OPENING_RADIUS = 2;
+
+    private static final BooleanSupplier NEVER = () -> false;
+
+    private GomokuCpuMatch() {
+    }
+
+    // 1つの大きさでの結果 (alphaBeta: AlphaBetaCpu, simple: SimpleCpu)
+    private static final class Stats {
+        int alphaBetaWins;
+        int simpleWins;
+        int draws;
+        final long[] moves = new long[2];
+        final long[] nanos = new long[2];
+        final long[] maxNanos = new long[2];
+
+        void record(int side, long elapsed) {
+            moves[side]++;
+            nanos[side] += elapsed;
+            maxNanos[side] = Math.max(maxNanos[side], elapsed);
+        }
+
+        String time(int side) {
+            return String.format("%.1f ms/move (max %.1f)",
+                    nanos[side] / 1e6 / Math.max(1, moves[side]), maxNanos[side] / 1e6);
+        }
+    }
+
+    public static void main(String[] args) {
+        var games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        var budget = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        var seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+        var sizes = args.length > 3 ? args[3] : "15,19";
+
+        var random = new SplittableRandom(seed);
+        for (var sizeText : sizes.split(",")) {
+            var size = Integer.parseInt(sizeText.trim());
+            var stats = new Stats();
+            for (int game = 0; game < games; game += 2) {
+                var opening = randomOpening(size, random);
+                // 同じ序盤を、AlphaBetaCpu が黒と白の両方で打つ
+                play(size, budget, opening, 1, stats);
+                if (game + 1 < games) {
+                    play(size, budget, opening, 2, stats);
+                }
+            }
+            System.out.printf("%dx%d, %d ms/move: AlphaBetaCpu %d - %d SimpleCpu (%d draws)%n",
+                    size, size, budget, stats.alphaBetaWins, stats.simpleWins, stats.draws);
+            System.out.println("  AlphaBetaCpu " + stats.time(0) + ", SimpleCpu " + stats.time(1));
+        }
+    }
+
+    // 序盤の石 (黒から交互に置くマスの番号)
+    private static int[] randomOpening(int size, SplittableRandom random) {
+        var cells = new int[OPENING_STONES];
+        var center = size / 2;
+        for (int i = 0; i < cells.length; i++) {
+            int cell;
+            do {
+                var x = center + random.nextInt(-OPENING_RADIUS, OPENING_RADIUS + 1);
+                var y = center + random.nextInt(-OPENING_RADIUS, OPENING_RADIUS + 1);
+                cell = y * size + x;
+            } while (contains(cells, i, cell));
+            cells[i] = cell;
+        }
+        return cells;
+    }
+
+    private static boolean contains(int[] cells, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param alphaBetaPlayer AlphaBetaCpu の色 (1: 黒, 2: 白)
+     */
+    private static void play(int size, long budget, int[] opening, int alphaBetaPlayer, Stats stats) {
+        var logic = new GomokuLogic(size);
+        logic.startGame();
+        for (var cell : opening) {
+            logic.placeStone(cell % size, cell / size);
+        }
+
+        var simplePlayer = 3 - alphaBetaPlayer;
+        var alphaBeta = new AlphaBetaCpu(size, alphaBetaPlayer, budget);
+        var simple = new SimpleCpu(simplePlayer, budget);
+        while (!logic.isGameOver()) {
+            var side = logic.getCurrentPlayer() == alphaBetaPlayer ? 0 : 1;
+            var cpu = side == 0 ? alphaBeta : simple;
+            var start = System.nanoTime();
+            // CPUは思考中に盤面が変わらないよう、複製を受け取る
+            var move = cpu.findBestMove(new GomokuLogic(logic), NEVER);
+            stats.record(side, System.nanoTime() - start);
+            if (move == null) {
+                // 打てる場所がない (盤面が埋まった)
+                break;
+            }
+            if (!logic.placeStone(move[0], move[1])) {
+                throw new IllegalStateException((side == 0 ? "AlphaBetaCpu" : "SimpleCpu")
+                        + " returned an illegal move: " + move[0] + ", " + move[1]);
+            }
+        }
+
+        var winner = logic.getWinner();
+        if (winner == alphaBetaPlayer) {
+            stats.alphaBetaWins++;
+        } else if (winner == simplePlayer) {
+            stats.simpleWins++;
+        } else {
+            stats.draws++;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline opening book generator, run through the {@code buildOthelloBook} Gradle task.
+ * Plays self-play games with random deviations and stores the searched best move of every visited position.
+ * <p>
+ * Arguments: output file, max ply, search depth, number of games, random seed.
+ */
+public final class OthelloBookBuilder {
+    private static final double DEVIATION_RATE = 0.3;
+
+    private OthelloBookBuilder() {
+    }
+
+    private record Entry(long key, int move, int score) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OthelloBookBuilder <output> [maxPly=12] [depth=10] [games=2000] [seed=1]");
+            System.exit(1);
+        }
+        var output = Path.of(args[0]);
+        var maxPly = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        var depth = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        var games = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+        var seed = args.length > 4 ? Long.parseLong(args[4]) : 1L;
+
+        var random = new SplittableRandom(seed);
+        var table = new OthelloTranspositionTable(64);
+        var weights = OthelloWeights.loadDefault();
+        Map<Long, Entry> entries = new HashMap<>();
+
+        for (int game = 0; game < games; game++) {
+            var logic = new OthelloLogic();
+            for (int ply = 0; ply < maxPly && !logic.isGameOver(); ply++) {
+                if (logic.shouldSkipTurn()) {
+                    logic.nextTurn();
+                    continue;
+                }
+
+                var color = logic.getCurrentPlayer();
+                var player = logic.getBoard(color);
+                var opponent = logic.getBoard(color == OthelloPlayer.BLACK ? OthelloPlayer.WHITE : OthelloPlayer.BLACK);
+                var symmetry = OthelloOpeningBook.normalSymmetry(player, opponent);
+                var key = OthelloOpeningBook.key(
+                        OthelloSymmetry.transform(player, symmetry),
+                        OthelloSymmetry.transform(opponent, symmetry));
+
+                var entry = entries.get(key);
+                int bestMove;
+                if (entry == null) {
+                    var result = new OthelloSearch(table, weights).search(player, opponent, color, logic.getHash(), depth, TimeUnit.DAYS.toMillis(1));
+                    bestMove = result.move();
+                    var score = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, result.score()));
+                    entries.put(key, new Entry(key, OthelloSymmetry.transformSquare(bestMove, symmetry), score));
+                } else {
+                    bestMove = OthelloSymmetry.inverseSquare(entry.move(), symmetry);
+                }
+
+                var move = bestMove;
+                if (random.nextDouble() < DEVIATION_RATE) {
+                    // Deviate like a human would, so the book also covers replies to weaker moves
+                    var moves = OthelloBitboard.legalMoves(player, opponent);
+                    var pick = random.nextInt(Long.bitCount(moves));
+                    for (int i = 0; i < pick; i++) {
+                        moves &= moves - 1;
+                    }
+                    move = Long.numberOfTrailingZeros(moves);
+                }
+
+                logic.placeDisk(move);
+                logic.nextTurn();
+            }
+
+            if ((game + 1) % 100 == 0) {
+                System.out.println("Games: " + (game + 1) + "/" + games + ", positions: " + entries.size());
+            }
+        }
+
+        var sorted = new ArrayList<>(entries.values());
+        sorted.sort((a, b) -> Long.compareUnsigned(a.key(), b.key()));
+
+        var parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(OthelloOpeningBook.MAGIC);
+            out.writeInt(OthelloOpeningBook.VERSION);
+            out.writeInt(sorted.size());
+            for (var entry : sorted) {
+                out.writeLong(entry.key());
+                out.writeByte(entry.move());
+                out.writeByte(0);
+                out.writeShort(entry.score());
+            }
+        }
+
+        System.out.println("Wrote " + sorted.size() + " positions to " + output);
+    }
+}
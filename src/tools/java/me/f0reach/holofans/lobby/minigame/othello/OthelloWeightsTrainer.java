@@ -0,0 +1,223 @@
+package me.f0reach.holofans.lobby.minigame.othello;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline trainer for the pattern weights, run through the {@code trainOthelloWeights} Gradle task.
+ * Plays self-play games with random deviations, labels positions with the exactly solved result
+ * of the game, and fits the weights of every phase with stochastic gradient descent.
+ * The weights bundled with the plugin (if any) are used for the self-play search, so repeated runs bootstrap.
+ * <p>
+ * Arguments: output file, number of games, search depth, epochs, random seed.
+ */
+public final class OthelloWeightsTrainer {
+    private static final int RANDOM_OPENING_PLIES = 8;
+    private static final double DEVIATION_RATE = 0.1;
+    private static final double ENDGAME_DEVIATION_RATE = 0.3;
+    private static final int SOLVE_EMPTIES = 12;
+    private static final double LEARNING_RATE = 0.002;
+    private static final int VALIDATION_INTERVAL = 20;
+
+    private OthelloWeightsTrainer() {
+    }
+
+    // Target is the final disk difference for black, in 1/SCALE disks
+    private record Sample(long black, long white, boolean whiteToMove, int target) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OthelloWeightsTrainer <output> [games=10000] [depth=4] [epochs=15] [seed=1]");
+            System.exit(1);
+        }
+        var output = Path.of(args[0]);
+        var games = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        var depth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        var epochs = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+        var seed = args.length > 4 ? Long.parseLong(args[4]) : 1L;
+
+        var random = new SplittableRandom(seed);
+        var search = new OthelloSearch(new OthelloTranspositionTable(16), OthelloWeights.loadDefault());
+        var solver = new OthelloEndgameSolver();
+        List<Sample> samples = new ArrayList<>();
+        for (int game = 0; game < games; game++) {
+            playGame(search, solver, depth, random, samples);
+            if ((game + 1) % 100 == 0) {
+                System.out.println("Games: " + (game + 1) + "/" + games + ", samples: " + samples.size());
+            }
+        }
+
+        var weights = train(samples, epochs, random);
+
+        var parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (var out = Files.newOutputStream(output)) {
+            weights.write(out);
+        }
+        System.out.println("Wrote weights to " + output);
+    }
+
+    private static void playGame(OthelloSearch search, OthelloEndgameSolver solver, int depth,
+                                 SplittableRandom random, List<Sample> samples) {
+        var black = OthelloBitboard.INITIAL_BLACK;
+        var white = OthelloBitboard.INITIAL_WHITE;
+        var color = OthelloPlayer.BLACK;
+        var start = samples.size();
+        var ply = 0;
+
+        while (true) {
+            var player = color == OthelloPlayer.BLACK ? black : white;
+            var opponent = color == OthelloPlayer.BLACK ? white : black;
+            var moves = OthelloBitboard.legalMoves(player, opponent);
+            if (moves == 0) {
+                if (OthelloBitboard.legalMoves(opponent, player) == 0) {
+                    // Game over before the endgame, every position gets the final result
+                    label(samples, start, samples.size(), (Long.bitCount(black) - Long.bitCount(white)) * OthelloWeights.SCALE);
+                    return;
+                }
+                color = opposite(color);
+                continue;
+            }
+
+            var empties = Long.bitCount(~(black | white));
+            if (empties <= SOLVE_EMPTIES) {
+                break;
+            }
+
+            samples.add(new Sample(black, white, color == OthelloPlayer.WHITE, 0));
+            int move;
+            if (ply < RANDOM_OPENING_PLIES || random.nextDouble() < DEVIATION_RATE) {
+                move = randomMove(moves, random);
+            } else {
+                move = search.search(player, opponent, color, hash(black, white, color), depth, TimeUnit.DAYS.toMillis(1)).move();
+            }
+            var flipped = OthelloBitboard.flips(player, opponent, move);
+            player |= flipped | (1L << move);
+            opponent &= ~flipped;
+            black = color == OthelloPlayer.BLACK ? player : opponent;
+            white = color == OthelloPlayer.BLACK ? opponent : player;
+            color = opposite(color);
+            ply++;
+        }
+
+        // The midgame positions are labelled with the perfect play result from here
+        var midgameEnd = samples.size();
+        var first = true;
+        while (true) {
+            var player = color == OthelloPlayer.BLACK ? black : white;
+            var opponent = color == OthelloPlayer.BLACK ? white : black;
+            var moves = OthelloBitboard.legalMoves(player, opponent);
+            if (moves == 0) {
+                if (OthelloBitboard.legalMoves(opponent, player) == 0) {
+                    return;
+                }
+                color = opposite(color);
+                continue;
+            }
+
+            var solved = solver.solve(player, opponent, Long.MAX_VALUE, TimeUnit.DAYS.toMillis(1));
+            var score = (color == OthelloPlayer.BLACK ? solved.score() : -solved.score()) * OthelloWeights.SCALE;
+            if (first) {
+                label(samples, start, midgameEnd, score);
+                first = false;
+            }
+            samples.add(new Sample(black, white, color == OthelloPlayer.WHITE, score));
+
+            var move = random.nextDouble() < ENDGAME_DEVIATION_RATE ? randomMove(moves, random) : solved.move();
+            var flipped = OthelloBitboard.flips(player, opponent, move);
+            player |= flipped | (1L << move);
+            opponent &= ~flipped;
+            black = color == OthelloPlayer.BLACK ? player : opponent;
+            white = color == OthelloPlayer.BLACK ? opponent : player;
+            color = opposite(color);
+        }
+    }
+
+    private static void label(List<Sample> samples, int from, int to, int target) {
+        for (int i = from; i < to; i++) {
+            var sample = samples.get(i);
+            samples.set(i, new Sample(sample.black(), sample.white(), sample.whiteToMove(), target));
+        }
+    }
+
+    private static int randomMove(long moves, SplittableRandom random) {
+        var pick = random.nextInt(Long.bitCount(moves));
+        for (int i = 0; i < pick; i++) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    private static long hash(long black, long white, OthelloPlayer color) {
+        return OthelloZobrist.hash(black, white, color == OthelloPlayer.WHITE);
+    }
+
+    private static OthelloPlayer opposite(OthelloPlayer color) {
+        return color == OthelloPlayer.BLACK ? OthelloPlayer.WHITE : OthelloPlayer.BLACK;
+    }
+
+    private static OthelloWeights train(List<Sample> samples, int epochs, SplittableRandom random) {
+        // Shuffle once, every VALIDATION_INTERVAL-th sample is held out
+        for (int i = samples.size() - 1; i > 0; i--) {
+            var j = random.nextInt(i + 1);
+            var tmp = samples.get(i);
+            samples.set(i, samples.get(j));
+            samples.set(j, tmp);
+        }
+
+        var weights = new float[OthelloPatterns.PHASES][OthelloPatterns.WEIGHT_COUNT];
+        var evaluator = new OthelloEvaluator(null);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            var trainError = 0.0;
+            var trainCount = 0;
+            var validationError = 0.0;
+            var validationCount = 0;
+            for (int i = 0; i < samples.size(); i++) {
+                var sample = samples.get(i);
+                evaluator.set(sample.black(), sample.white());
+                var phase = weights[OthelloPatterns.phase(Long.bitCount(~(sample.black() | sample.white())))];
+                var tempo = OthelloPatterns.TEMPO_OFFSET + (sample.whiteToMove() ? 1 : 0);
+
+                var prediction = phase[tempo];
+                for (int instance = 0; instance < OthelloPatterns.INSTANCE_COUNT; instance++) {
+                    prediction += phase[OthelloPatterns.INSTANCE_OFFSETS[instance] + evaluator.index(instance)];
+                }
+                var error = sample.target() - prediction;
+                var errorDisks = error / OthelloWeights.SCALE;
+
+                if (i % VALIDATION_INTERVAL == 0) {
+                    validationError += errorDisks * errorDisks;
+                    validationCount++;
+                    continue;
+                }
+                trainError += errorDisks * errorDisks;
+                trainCount++;
+
+                var step = (float) (LEARNING_RATE * error);
+                phase[tempo] += step;
+                for (int instance = 0; instance < OthelloPatterns.INSTANCE_COUNT; instance++) {
+                    phase[OthelloPatterns.INSTANCE_OFFSETS[instance] + evaluator.index(instance)] += step;
+                }
+            }
+            System.out.printf("Epoch %d: train RMSE %.2f, validation RMSE %.2f disks%n", epoch + 1,
+                    Math.sqrt(trainError / Math.max(trainCount, 1)),
+                    Math.sqrt(validationError / Math.max(validationCount, 1)));
+        }
+
+        var rounded = new short[OthelloPatterns.PHASES][OthelloPatterns.WEIGHT_COUNT];
+        for (int phase = 0; phase < OthelloPatterns.PHASES; phase++) {
+            for (int i = 0; i < OthelloPatterns.WEIGHT_COUNT; i++) {
+                rounded[phase][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(weights[phase][i])));
+            }
+        }
+        return new OthelloWeights(rounded);
+    }
+}